@@ -0,0 +1,101 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inputs for the benchmarks: {@link SyntheticCatalogGenerator} files in temp files, and the
+ * grouped and validated catalog for the stages that start from there. Seeded, so every fork
+ * benchmarks the same file.
+ */
+final class CatalogFixtures {
+
+    static final long SEED = 20250411L;
+
+    static final ProcessingReporter QUIET = new ProcessingReporter() {
+        @Override
+        public void info(String message) {
+        }
+
+        @Override
+        public void warning(String message) {
+        }
+
+        @Override
+        public void error(String message) {
+        }
+    };
+
+    private CatalogFixtures() {
+    }
+
+    /** Reads a product CSV into handle groups the way CsvProcessor's grouped mode does, image rows skipped. */
+    static Map<String, List<ProductRow>> groupByHandle(File productCsv) throws IOException {
+        Map<String, List<ProductRow>> groups = new LinkedHashMap<>();
+        try (MappedCsvReader reader = new MappedCsvReader(productCsv.toPath())) {
+            reader.project(ProductSchema.compile(reader.getHeaderMap()).getSourceIndices());
+            ProductTable table = new ProductTable();
+            String[] values = new String[ProductSchema.COLUMN_COUNT];
+            while (reader.next(values)) {
+                if (!CsvProcessor.isImageEntry(values)) {
+                    ProductRow row = table.add(values);
+                    groups.computeIfAbsent(row.get(ProductSchema.HANDLE), k -> new ArrayList<>()).add(row);
+                }
+            }
+        }
+        return groups;
+    }
+
+    /** Validates the groups on the calling thread, in order. The collector comes back closed, its rows still readable. */
+    static ValidationCollector validate(Map<String, List<ProductRow>> groups) {
+        HandleGroupValidator validator = new HandleGroupValidator();
+        try (ValidationCollector collector = new ValidationCollector(null)) {
+            for (Map.Entry<String, List<ProductRow>> group : groups.entrySet()) {
+                collector.accept(validator.validate(group.getKey(), group.getValue()));
+            }
+            return collector;
+        }
+    }
+
+    /** A product export of rows variant rows, variantsPerHandle per handle. */
+    static File productCsv(int rows, int variantsPerHandle, double errorRate) throws IOException {
+        File file = tempFile("bench-products-");
+        generator(rows, variantsPerHandle, errorRate).writeProductCsv(file);
+        return file;
+    }
+
+    /** A product upload template: rows rows in groups of variantsPerGroup under a variation_name. */
+    static File productUploadCsv(int rows, int variantsPerGroup, double errorRate) throws IOException {
+        File file = tempFile("bench-product-upload-");
+        generator(rows, variantsPerGroup, errorRate).writeProductUploadCsv(file);
+        return file;
+    }
+
+    /** A variation upload template, one variation per row. */
+    static File variationUploadCsv(int rows, double errorRate) throws IOException {
+        File file = tempFile("bench-variation-upload-");
+        generator(rows, 1, errorRate).writeVariationUploadCsv(file);
+        return file;
+    }
+
+    // errorRate drives both the duplicate SKU and the invalid option rate
+    private static SyntheticCatalogGenerator generator(int rows, int variantsPerHandle, double errorRate) {
+        SyntheticCatalogGenerator generator = new SyntheticCatalogGenerator();
+        generator.setSeed(SEED);
+        generator.setRows(rows);
+        generator.setHandles(Math.max(rows / variantsPerHandle, 1));
+        generator.setDuplicateSkuRate(errorRate);
+        generator.setInvalidOptionRate(errorRate);
+        return generator;
+    }
+
+    private static File tempFile(String prefix) throws IOException {
+        File file = File.createTempFile(prefix, ".csv");
+        file.deleteOnExit();
+        return file;
+    }
+}
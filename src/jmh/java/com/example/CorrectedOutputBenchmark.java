@@ -0,0 +1,75 @@
+package com.example;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * generateCorrectedOutput on a workbook written by processCsv: loading it, filtering the Success
+ * rows, building the SKU query and saving the filtered workbook.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CorrectedOutputBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"4"})
+    public int variantsPerHandle;
+
+    @Param({"0.02"})
+    public double errorRate;
+
+    private File processedWorkbook;
+    private File correctedOutput;
+
+    @Setup
+    public void generate() throws IOException {
+        File input = CatalogFixtures.productCsv(rows, variantsPerHandle, errorRate);
+        processedWorkbook = File.createTempFile("bench-processed-", ".xlsx");
+        processedWorkbook.delete();
+        try {
+            new CsvProcessor().processCsv(input.getPath(), processedWorkbook.getPath(), CatalogFixtures.QUIET);
+        } finally {
+            input.delete();
+        }
+        correctedOutput = File.createTempFile("bench-corrected-", ".xlsx");
+    }
+
+    @TearDown
+    public void delete() {
+        processedWorkbook.delete();
+        correctedOutput.delete();
+    }
+
+    @Benchmark
+    public String generateCorrectedOutput() throws IOException {
+        CorrectedOutputGenerator.CorrectedOutput output = new CorrectedOutputGenerator().generate(processedWorkbook, CatalogFixtures.QUIET);
+        try (Workbook workbook = output.getWorkbook();
+             OutputStream out = new FileOutputStream(correctedOutput)) {
+            workbook.write(out);
+        }
+        return output.getSqlQuery();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokenizing a product export into the schema columns, as the first stage of processCsv does.
+ * parseThreads above 1 uses the chunked parallel parse with small chunks, so it kicks in on these
+ * file sizes too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CsvParseBenchmark {
+
+    private static final long CHUNK_BYTES = 4L * 1024 * 1024;
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"4"})
+    public int variantsPerHandle;
+
+    @Param({"0.02"})
+    public double errorRate;
+
+    @Param({"1", "4"})
+    public int parseThreads;
+
+    private File input;
+
+    @Setup
+    public void generate() throws IOException {
+        input = CatalogFixtures.productCsv(rows, variantsPerHandle, errorRate);
+    }
+
+    @TearDown
+    public void delete() {
+        input.delete();
+    }
+
+    @Benchmark
+    public long parse(Blackhole blackhole) throws IOException {
+        long records = 0;
+        try (MappedCsvReader reader = new MappedCsvReader(input.toPath())) {
+            reader.project(ProductSchema.compile(reader.getHeaderMap()).getSourceIndices());
+            reader.parseInParallel(parseThreads, CHUNK_BYTES);
+            String[] values = new String[ProductSchema.COLUMN_COUNT];
+            while (reader.next(values)) {
+                blackhole.consume(values);
+                records++;
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * processCsv end to end: parse, validate and write the output workbook. layout picks the code path:
+ * contiguous (the default streaming mode), grouped (whole file grouped by handle) or spill
+ * (grouped through partition files).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProcessCsvBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"1", "4", "20"})
+    public int variantsPerHandle;
+
+    @Param({"0", "0.02", "0.2"})
+    public double errorRate;
+
+    @Param({"contiguous", "grouped", "spill"})
+    public String layout;
+
+    private File input;
+    private File output;
+    private CsvProcessor processor;
+
+    @Setup
+    public void generate() throws IOException {
+        input = CatalogFixtures.productCsv(rows, variantsPerHandle, errorRate);
+        output = File.createTempFile("bench-output-", ".xlsx");
+        output.delete();
+        ProcessingOptions options = new ProcessingOptions();
+        options.setContiguousHandles("contiguous".equals(layout));
+        if ("spill".equals(layout)) {
+            options.setSpillThresholdBytes(0);
+        }
+        processor = new CsvProcessor(options);
+    }
+
+    @TearDown
+    public void delete() {
+        input.delete();
+        output.delete();
+    }
+
+    @Benchmark
+    public ProcessingResult processCsv() throws IOException {
+        return processor.processCsv(input.getPath(), output.getPath(), CatalogFixtures.QUIET);
+    }
+}
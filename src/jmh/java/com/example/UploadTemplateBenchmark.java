@@ -0,0 +1,84 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * processProductUpload and processVariationUpload on generated templates, writing their output
+ * CSVs into a temp directory. twoPass forces the product upload's two-pass path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UploadTemplateBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"4"})
+    public int variantsPerHandle;
+
+    @Param({"0.02"})
+    public double errorRate;
+
+    @Param({"false", "true"})
+    public boolean twoPass;
+
+    private File productUpload;
+    private File variationUpload;
+    private File outputDir;
+    private UploadTemplateProcessor processor;
+
+    @Setup
+    public void generate() throws IOException {
+        productUpload = CatalogFixtures.productUploadCsv(rows, variantsPerHandle, errorRate);
+        variationUpload = CatalogFixtures.variationUploadCsv(rows, errorRate);
+        outputDir = Files.createTempDirectory("bench-upload-").toFile();
+        ProcessingOptions options = new ProcessingOptions();
+        if (twoPass) {
+            options.setTwoPassUploadThresholdBytes(0);
+        }
+        processor = new UploadTemplateProcessor(options);
+    }
+
+    @TearDown
+    public void delete() {
+        productUpload.delete();
+        variationUpload.delete();
+        File[] outputs = outputDir.listFiles();
+        if (outputs != null) {
+            for (File output : outputs) {
+                output.delete();
+            }
+        }
+        outputDir.delete();
+    }
+
+    @Benchmark
+    public UploadTemplateProcessor.UploadResult processProductUpload() throws IOException {
+        return processor.processProductUpload(productUpload, outputDir, CatalogFixtures.QUIET);
+    }
+
+    @Benchmark
+    public UploadTemplateProcessor.UploadResult processVariationUpload() throws IOException {
+        return processor.processVariationUpload(variationUpload, outputDir, CatalogFixtures.QUIET);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of already grouped rows, from 10k to 1M rows with a fixed share of errors. Validation
+ * is linear in the number of rows when score / rows stays flat across the rows values; the
+ * meta-title check used to rescan every error collected so far, which made it quadratic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ValidationScalingBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"4"})
+    public int variantsPerHandle;
+
+    @Param({"0.05"})
+    public double errorRate;
+
+    private Map<String, List<ProductRow>> groups;
+
+    @Setup
+    public void generate() throws IOException {
+        File input = CatalogFixtures.productCsv(rows, variantsPerHandle, errorRate);
+        try {
+            groups = CatalogFixtures.groupByHandle(input);
+        } finally {
+            input.delete();
+        }
+    }
+
+    @Benchmark
+    public ValidationCollector validate() {
+        return CatalogFixtures.validate(groups);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example;
+
+import com.example.CsvProcessor.ProductError;
+import com.example.CsvProcessor.SuccessfulRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming the error sheets and the Success sheet of a validated catalog into a workbook, each
+ * on its own, including writing the .xlsx to disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WorkbookWriteBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"4"})
+    public int variantsPerHandle;
+
+    @Param({"0.02", "0.2"})
+    public double errorRate;
+
+    private Map<String, List<ProductError>> errors;
+    private List<SuccessfulRecord> successfulRecords;
+    private File output;
+
+    @Setup
+    public void generate() throws IOException {
+        File input = CatalogFixtures.productCsv(rows, variantsPerHandle, errorRate);
+        try {
+            ValidationCollector collector = CatalogFixtures.validate(CatalogFixtures.groupByHandle(input));
+            errors = collector.getErrors();
+            successfulRecords = collector.getSuccessfulRecords();
+        } finally {
+            input.delete();
+        }
+        output = File.createTempFile("bench-sheets-", ".xlsx");
+    }
+
+    @TearDown
+    public void delete() {
+        output.delete();
+    }
+
+    @Benchmark
+    public void writeErrorsToExcel() throws IOException {
+        try (StreamingWorkbookWriter writer = new StreamingWorkbookWriter(output.getPath())) {
+            CsvProcessor.writeErrorsToExcel(writer, errors);
+            writer.finish();
+        }
+    }
+
+    @Benchmark
+    public void writeSuccessfulRecordsToExcel() throws IOException {
+        try (StreamingWorkbookWriter writer = new StreamingWorkbookWriter(output.getPath())) {
+            CsvProcessor.writeSuccessfulRecordsToExcel(writer, successfulRecords);
+            writer.finish();
+        }
+    }
+}
@@ -38,6 +38,12 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javafx.util.Duration;
@@ -62,7 +68,30 @@ public class CSVProcessorApp extends Application {
     @FXML
     private Label variationSelectedFileLabel;
 
-    private final CsvProcessor csvProcessor = new CsvProcessor();
+    // Shared by both processors, so the SKU index, once opened, applies to every run
+    private final ProcessingOptions processingOptions = new ProcessingOptions();
+    private final CsvProcessor csvProcessor = new CsvProcessor(processingOptions);
+    private final UploadTemplateProcessor uploadTemplateProcessor = new UploadTemplateProcessor(processingOptions);
+    // SKUs already in the store, rebuilt from a database export; null until a run or an import needs it
+    private static final File SKU_INDEX_FILE = new File(System.getProperty("user.home"), ".shopify-csv-fixer" + File.separator + "sku-index.dat");
+    private SkuIndex skuIndex;
+    // Routes processor messages to the messages area; safe to use from the batch worker threads
+    private final ProcessingReporter messageReporter = new ProcessingReporter() {
+        @Override
+        public void info(String message) {
+            displayInfo(message);
+        }
+
+        @Override
+        public void warning(String message) {
+            displayWarning(message);
+        }
+
+        @Override
+        public void error(String message) {
+            displayError(message);
+        }
+    };
     private List<File> selectedCsvFiles = new ArrayList<>();
     private List<File> processedExcelFiles = new ArrayList<>();
     private List<File> savedExcelFiles = new ArrayList<>(); // List to track saved files
@@ -72,12 +101,20 @@ public class CSVProcessorApp extends Application {
     private String cssFilePath;
     private ProgressBar progressBar;  // Add ProgressBar
     private Label progressLabel; // Add Label for progress text
+    private static final String BATCH_PARALLELISM_KEY = "batch_parallelism";
+    private Spinner<Integer> parallelismSpinner; // How many CSV files are processed at once
+    private Button cancelBatchButton;
+    private Task<Integer> batchTask; // The running CSV batch, null when idle
 
 
     private Button saveTemplate1;
     private Button processTemplate1;
 
     public static void main(String[] args) {
+        // With arguments, run headless (no JavaFX toolkit): see CsvProcessorCli for the commands
+        if (args.length > 0) {
+            System.exit(CsvProcessorCli.run(args, System.out, System.err));
+        }
         launch(args);
     }
 
@@ -224,6 +261,12 @@ public class CSVProcessorApp extends Application {
             System.out.println("Corrected Output Button Clicked");
             chooseProcessedFileAndGenerateCorrectedOutput();
         });
+        Button importSkuExportButton = new Button("Import SKU Export");
+        importSkuExportButton.setPrefWidth(250);
+        importSkuExportButton.setOnAction(e -> {
+            System.out.println("Import SKU Export Button Clicked");
+            importSkuExport();
+        });
 
 
 
@@ -282,7 +325,7 @@ public class CSVProcessorApp extends Application {
         buttonContainer.setAlignment(Pos.CENTER);
         buttonContainer.setPadding(new Insets(10));
         buttonContainer.getChildren().addAll(selectCsvButton, processButton, viewExcelButton, saveExcelButton);
-        buttonContainer.getChildren().addAll(correctedOutputButton);
+        buttonContainer.getChildren().addAll(correctedOutputButton, importSkuExportButton);
 
         HBox saveClearButtonContainer = new HBox(15);
         saveClearButtonContainer.setAlignment(Pos.CENTER_RIGHT);
@@ -385,10 +428,35 @@ public class CSVProcessorApp extends Application {
         rightAlignedButtonBox.getChildren().addAll(spacer1, convertNumbersToCsvButton);
 
 
+        // Batch progress: files done out of files selected, with the parallelism and a cancel button
+        progressBar = new ProgressBar(0);
+        progressBar.setPrefWidth(250);
+        progressLabel = new Label("");
+        int defaultParallelism = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        int savedParallelism;
+        try {
+            savedParallelism = Integer.parseInt(loadPreference(BATCH_PARALLELISM_KEY, String.valueOf(defaultParallelism)));
+        } catch (NumberFormatException e) {
+            savedParallelism = defaultParallelism;
+        }
+        parallelismSpinner = new Spinner<>(1, 16, Math.max(1, Math.min(16, savedParallelism)));
+        parallelismSpinner.setPrefWidth(70);
+        cancelBatchButton = new Button("Cancel");
+        cancelBatchButton.setDisable(true);
+        cancelBatchButton.setOnAction(e -> {
+            System.out.println("Cancel Button Clicked");
+            if (batchTask != null) {
+                batchTask.cancel(true);
+            }
+        });
+        HBox progressContainer = new HBox(10);
+        progressContainer.setAlignment(Pos.CENTER_LEFT);
+        progressContainer.getChildren().addAll(new Label("Files at once:"), parallelismSpinner, progressBar, progressLabel, cancelBatchButton);
+
         // Main Layout
         VBox layout = new VBox(10);
         layout.setPadding(new Insets(10));
-        layout.getChildren().addAll(buttonContainer, saveClearButtonContainer, rightAlignedButtonBox, selectedFileLabel,variationSelectedFileLabel, new Label("Messages/Warnings:"), errorTextArea, toggleInstructionsButton, instructionsLabel);
+        layout.getChildren().addAll(buttonContainer, saveClearButtonContainer, rightAlignedButtonBox, selectedFileLabel,variationSelectedFileLabel, progressContainer, new Label("Messages/Warnings:"), errorTextArea, toggleInstructionsButton, instructionsLabel);
 
 
 
@@ -612,166 +680,21 @@ public class CSVProcessorApp extends Application {
         }
 
         File csvFile = selectedCsvFiles.get(0);
-        List<String> errors = new ArrayList<>();
-
-        // Only these columns will be exported
-        List<String> exportHeaders = Arrays.asList("variation_name", "option1", "option2", "product_code");
+        List<String> messages = new ArrayList<>();
+        openSkuIndex(false);
 
         try {
-            List<String> lines = Files.readAllLines(csvFile.toPath(), StandardCharsets.UTF_8);
-            String cleanedHeaderLine = lines.get(0).replaceAll(",\\s*$", "");
-            lines.set(0, cleanedHeaderLine);
-            String cleanedCsvContent = String.join("\n", lines);
-
-            try (Reader cleanedReader = new StringReader(cleanedCsvContent)) {
-                CSVParser parser = new CSVParser(cleanedReader, CSVFormat.DEFAULT
-                        .withFirstRecordAsHeader()
-                        .withIgnoreHeaderCase()
-                        .withTrim());
-
-                Map<String, Integer> headerMap = parser.getHeaderMap();
-                for (String required : exportHeaders) {
-                    if (!headerMap.containsKey(required)) {
-                        errorTextArea.setText("Missing required header: " + required);
-                        return;
-                    }
-                }
-
-                // 1. Group records by variation_name
-                List<List<CSVRecord>> allGroups = new ArrayList<>();
-                List<String> groupNames = new ArrayList<>();
-                List<CSVRecord> currentGroup = new ArrayList<>();
-                for (CSVRecord record : parser) {
-                    // Check for blank record
-                    boolean isBlankRecord = true;
-                    for (String value : exportHeaders) {
-                        if (!record.get(value).trim().isEmpty()) {
-                            isBlankRecord = false;
-                            break;
-                        }
-                    }
-                    if (isBlankRecord) continue;
-
-                    String variationName = record.get("variation_name").trim();
-                    if (!variationName.isEmpty()) {
-                        if (!currentGroup.isEmpty()) {
-                            allGroups.add(new ArrayList<>(currentGroup));
-                            currentGroup.clear();
-                        }
-                        groupNames.add(variationName);
-                    }
-                    currentGroup.add(record);
-                }
-                if (!currentGroup.isEmpty()) {
-                    allGroups.add(currentGroup);
-                }
-
-                // 2. Check for duplicate variation_name groups
-                Map<String, List<Integer>> variationNameToGroups = new HashMap<>();
-                for (int i = 0; i < groupNames.size(); i++) {
-                    String name = groupNames.get(i);
-                    variationNameToGroups.computeIfAbsent(name, k -> new ArrayList<>()).add(i);
-                }
-
-                // 3. Map product_code to groups
-                Map<String, List<Integer>> productCodeToGroups = new HashMap<>();
-                for (int i = 0; i < allGroups.size(); i++) {
-                    for (CSVRecord record : allGroups.get(i)) {
-                        String productCode = record.get("product_code").trim();
-                        if (!productCode.isEmpty()) {
-                            productCodeToGroups.computeIfAbsent(productCode, k -> new ArrayList<>()).add(i);
-                        }
-                    }
-                }
-
-                // 4. Identify invalid groups (duplicate variation_name, duplicate product_code, missing fields)
-                Set<Integer> invalidGroupIndexes = new HashSet<>();
-                // a) Duplicate variation_name
-                for (Map.Entry<String, List<Integer>> entry : variationNameToGroups.entrySet()) {
-                    if (entry.getValue().size() > 1) {
-                        invalidGroupIndexes.addAll(entry.getValue());
-                    }
-                }
-                // b) Duplicate product_code across groups
-                for (Map.Entry<String, List<Integer>> entry : productCodeToGroups.entrySet()) {
-                    if (entry.getValue().size() > 1) {
-                        invalidGroupIndexes.addAll(entry.getValue());
-                    }
-                }
-                // c) Validation for each group (option1 required for header, product_code required/unique in group)
-                for (int i = 0; i < allGroups.size(); i++) {
-                    List<CSVRecord> group = allGroups.get(i);
-                    Set<String> localProductCodes = new HashSet<>();
-                    for (int j = 0; j < group.size(); j++) {
-                        CSVRecord record = group.get(j);
-                        String productCode = record.get("product_code").trim();
-                        String option1 = record.get("option1").trim();
-                        String variationName = record.get("variation_name").trim();
-
-                        if (j == 0 && option1.isEmpty()) {
-                            invalidGroupIndexes.add(i);
-                        }
-                        if (productCode.isEmpty() || !localProductCodes.add(productCode)) {
-                            invalidGroupIndexes.add(i);
-                        }
-                    }
-                }
-
-                // 5. Separate valid/invalid groups
-                List<List<CSVRecord>> validGroups = new ArrayList<>();
-                List<List<CSVRecord>> invalidGroups = new ArrayList<>();
-                for (int i = 0; i < allGroups.size(); i++) {
-                    if (invalidGroupIndexes.contains(i)) {
-                        invalidGroups.add(allGroups.get(i));
-                    } else {
-                        validGroups.add(allGroups.get(i));
-                    }
-                }
-
-                // 6. Write valid groups
-                if (!validGroups.isEmpty()) {
-                    File outFile = new File(csvFile.getParent(), "product_upload_processed.csv");
-                    try (BufferedWriter writer = Files.newBufferedWriter(outFile.toPath(), StandardCharsets.UTF_8)) {
-                        CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(exportHeaders.toArray(new String[0])));
-                        for (List<CSVRecord> group : validGroups) {
-                            for (CSVRecord rec : group) {
-                                List<String> row = exportHeaders.stream()
-                                        .map(h -> rec.get(h))
-                                        .collect(Collectors.toList());
-                                printer.printRecord(row);
-                            }
-                        }
-                        printer.flush();
-                        processedExcelFiles.clear();
-                        processedExcelFiles.add(outFile);
-                        errors.add("Processed file Temporary saved as: " + outFile.getAbsolutePath());
-                        saveTemplate1.setText("save Product Upload File");
-                    }
-                } else {
-                    errors.add("No valid product groups to write.");
-                }
-
-                // 7. Write invalid groups
-                if (!invalidGroups.isEmpty()) {
-                    File invalidFile = new File(csvFile.getParent(), "invalid.csv");
-                    try (BufferedWriter writer = Files.newBufferedWriter(invalidFile.toPath(), StandardCharsets.UTF_8)) {
-                        CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(exportHeaders.toArray(new String[0])));
-                        for (List<CSVRecord> group : invalidGroups) {
-                            for (CSVRecord rec : group) {
-                                List<String> row = exportHeaders.stream()
-                                        .map(h -> rec.get(h))
-                                        .collect(Collectors.toList());
-                                printer.printRecord(row);
-                            }
-                        }
-                        printer.flush();
-                        processedExcelFiles.add(invalidFile);
-                        errors.add("Invalid records written to: " + invalidFile.getAbsolutePath());
-                    }
-                }
-
-                errorTextArea.setText(String.join("\n", errors));
+            UploadTemplateProcessor.UploadResult result =
+                    uploadTemplateProcessor.processProductUpload(csvFile, csvFile.getParentFile(), collectingReporter(messages));
+            if (result.getProcessedFile() != null) {
+                processedExcelFiles.clear();
+                processedExcelFiles.add(result.getProcessedFile());
+                saveTemplate1.setText("save Product Upload File");
             }
+            if (result.getInvalidFile() != null) {
+                processedExcelFiles.add(result.getInvalidFile());
+            }
+            errorTextArea.setText(String.join("\n", messages));
         } catch (Exception ex) {
             errorTextArea.setText("Error processing file: " + ex.getMessage());
             ex.printStackTrace();
@@ -790,120 +713,42 @@ public class CSVProcessorApp extends Application {
         }
 
         File csvFile = selectedCsvFiles.get(0);
-        List<String> errors = new ArrayList<>();
-        List<VariationRecord> validRecords = new ArrayList<>();
-        Set<String> variationNames = new HashSet<>();
-        Set<String> productCodes = new HashSet<>();
-        Set<String> duplicateVariationNames = new HashSet<>();
-        Set<String> duplicateProductCodes = new HashSet<>();
-
-        // Step 1: Read raw lines
-        List<String> lines = Files.readAllLines(csvFile.toPath(), StandardCharsets.UTF_8);
-
-        // Step 2: Trim trailing commas in header
-        String cleanedHeaderLine = lines.get(0).replaceAll(",\\s*$", "");
-
-        // Step 3: Replace header and rejoin for parser
-        lines.set(0, cleanedHeaderLine);
-        String cleanedCsvContent = String.join("\n", lines);
-
-        // Step 4: Parse cleaned content
-        try (Reader cleanedReader = new StringReader(cleanedCsvContent)) {
-            CSVParser parser = new CSVParser(cleanedReader, CSVFormat.DEFAULT
-                    .withFirstRecordAsHeader()
-                    .withIgnoreHeaderCase()
-                    .withTrim());
-
-
-            Map<String, Integer> headerMap = parser.getHeaderMap();
-            List<String> requiredHeaders = Arrays.asList("variation_name", "option1", "option2", "product_code");
-
-            // Check required headers
-            for (String required : requiredHeaders) {
-                if (!headerMap.containsKey(required)) {
-                    errorTextArea.setText("Missing required header: " + required);
-                    return;
-                }
-            }
+        List<String> messages = new ArrayList<>();
+        openSkuIndex(false);
 
-            int rowNum = 1 + 1; // header + 1-based indexing
-            for (CSVRecord record : parser) {
-                String variationName = record.get("variation_name").trim();
-                String option1 = record.get("option1").trim();
-                String option2 = record.get("option2").trim();
-                String productCode = record.get("product_code").trim();
-
-                if (variationName.isEmpty()) {
-                    rowNum++;
-                    continue;
-                }
-
-                if (option1.isEmpty() && option2.isEmpty()) {
-                    errors.add("Row " + rowNum + ": Must have at least option1 or option2 for variation_name: " + variationName);
-                    rowNum++;
-                    continue;
-                }
-
-                if (!option2.isEmpty() && option1.isEmpty()) {
-                    errors.add("Row " + rowNum + ": Has option2 but missing option1 for variation_name: " + variationName);
-                    rowNum++;
-                    continue;
-                }
-
-                if (!variationNames.add(variationName)) {
-                    duplicateVariationNames.add(variationName);
-                    rowNum++;
-                    continue;
-                }
-
-                if (!productCode.isEmpty() && !productCodes.add(productCode)) {
-                    duplicateProductCodes.add(productCode);
-                    rowNum++;
-                    continue;
-                }
-
-                validRecords.add(new VariationRecord(variationName, option1, option2, productCode));
-                rowNum++;
+        try {
+            UploadTemplateProcessor.UploadResult result =
+                    uploadTemplateProcessor.processVariationUpload(csvFile, csvFile.getParentFile(), collectingReporter(messages));
+            if (result.getProcessedFile() != null) {
+                processedExcelFiles.clear();  // keep only the processedVariantupload files
+                processedExcelFiles.add(result.getProcessedFile());
+                saveTemplate1.setText("save Variation Upload File");
             }
+            errorTextArea.setText(String.join("\n", messages));
+        } catch (Exception ex) {
+            errorTextArea.setText("Error processing file: " + ex.getMessage());
+            ex.printStackTrace();
+        }
+    }
 
-            if (!duplicateVariationNames.isEmpty()) {
-                errors.add("Duplicate variation_name(s): " + String.join(", ", duplicateVariationNames));
-            }
-            if (!duplicateProductCodes.isEmpty()) {
-                errors.add("Duplicate product_code(s): " + String.join(", ", duplicateProductCodes));
+    // The upload templates show their messages as one block once the run is done, without prefixes
+    private static ProcessingReporter collectingReporter(List<String> messages) {
+        return new ProcessingReporter() {
+            @Override
+            public void info(String message) {
+                messages.add(message);
             }
 
-            if (!validRecords.isEmpty()) {
-                File outFile = new File(csvFile.getParent(), "variation_upload_processed.csv");
-                try (BufferedWriter writer = Files.newBufferedWriter(outFile.toPath(), StandardCharsets.UTF_8)) {
-                    CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT
-                            .withHeader("variation_name", "option1", "option2", "meta_product_code"));
-
-                    for (VariationRecord record : validRecords) {
-                        printer.printRecord(
-                                record.getVariationName(),
-                                record.getOption1(),
-                                record.getOption2(),
-                                record.getProductCode()
-                        );
-                    }
-
-                    printer.flush();
-                    processedExcelFiles.clear();  // keep only the processedVariantupload files
-                    processedExcelFiles.add(outFile);
-                    errors.add("Processed file Temporary saved as: " + outFile.getAbsolutePath());
-                    saveTemplate1.setText("save Variation Upload File");
-                }
-            } else {
-                errors.add("No valid records to write.");
+            @Override
+            public void warning(String message) {
+                messages.add(message);
             }
 
-            errorTextArea.setText(String.join("\n", errors));
-
-        } catch (Exception ex) {
-            errorTextArea.setText("Error processing file: " + ex.getMessage());
-            ex.printStackTrace();
-        }
+            @Override
+            public void error(String message) {
+                messages.add(message);
+            }
+        };
     }
 
 
@@ -1107,72 +952,210 @@ public class CSVProcessorApp extends Application {
             displayError("Please select CSV files first.");
             return;
         }
+        if (batchTask != null && batchTask.isRunning()) {
+            displayError("CSV files are already being processed. Cancel the current batch first.");
+            return;
+        }
+        openSkuIndex(false);
+
+        // Work out every output name up front on the FX thread, so concurrent files never race for the same attempt number
+        List<File> inputFiles = new ArrayList<>(selectedCsvFiles);
+        List<String> outputFilePaths = new ArrayList<>();
+        Map<String, Integer> reservedAttempts = new HashMap<>();
+        for (File csvFile : inputFiles) {
+            String baseName = csvFile.getName().replaceFirst("[.][^.]+$", ""); // Filename without extension
+            int attemptCount = Math.max(getAttemptCount(baseName), reservedAttempts.getOrDefault(baseName, 0) + 1);
+            reservedAttempts.put(baseName, attemptCount);
+            outputFilePaths.add(baseName + "_attempt_" + attemptCount + ".xlsx"); // Unique name
+        }
 
-        VBox layout = (VBox) errorTextArea.getParent();
-        ProgressIndicator progressIndicator = new ProgressIndicator();
-        progressIndicator.setProgress(-1.0);
-        progressIndicator.setVisible(true);
-        layout.getChildren().add(progressIndicator);
+        int parallelism = Math.max(1, Math.min(parallelismSpinner.getValue(), inputFiles.size()));
+        savePreference(BATCH_PARALLELISM_KEY, String.valueOf(parallelismSpinner.getValue()));
 
-        Task<Void> processingTask = new Task<Void>() {
+        // The task's value is the number of files that failed
+        Task<Integer> processingTask = new Task<Integer>() {
             @Override
-            protected Void call() throws Exception {
-                int totalFiles = selectedCsvFiles.size();
-                for (int i = 0; i < totalFiles; i++) {
-                    File csvFile = selectedCsvFiles.get(i);
-                    String inputFilePath = csvFile.getAbsolutePath();
-                    String baseName = csvFile.getName().replaceFirst("[.][^.]+$", ""); // Filename without extension
-
-                    int attemptCount = getAttemptCount(baseName);
-                    String outputFilePath = baseName + "_attempt_" + attemptCount + ".xlsx"; // Unique name
-
-                    try {
-                        boolean success = csvProcessor.processCsv(inputFilePath, outputFilePath, errorTextArea);
-                        if (success) {
-                            File outputFile = new File(outputFilePath);
-                            processedExcelFiles.add(outputFile);
-
-                            // Check if there are any errors in the output file
-                            boolean hasErrors = csvProcessor.hasErrors(outputFile);
-                            if (hasErrors) {
-                                Platform.runLater(() -> displayError("There are errors in this file. Please check: " + csvFile.getName() + " 😥"));
-                            } else {
-                                Platform.runLater(() -> displayInfo("There is no error in the file! " + csvFile.getName() + "😊"));
+            protected Integer call() throws Exception {
+                int totalFiles = inputFiles.size();
+                AtomicInteger completedFiles = new AtomicInteger();
+                AtomicInteger failedFiles = new AtomicInteger();
+                updateProgress(0, totalFiles);
+                updateMessage("Processing " + totalFiles + " file(s), " + parallelism + " at a time...");
+
+                ExecutorService filePool = Executors.newFixedThreadPool(parallelism, runnable -> {
+                    Thread thread = new Thread(runnable, "csv-batch-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                try {
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (int i = 0; i < totalFiles; i++) {
+                        File csvFile = inputFiles.get(i);
+                        String outputFilePath = outputFilePaths.get(i);
+                        futures.add(filePool.submit(() -> {
+                            if (isCancelled()) {
+                                return;
                             }
-                        }
-                    } catch (IOException e) {
-                        Platform.runLater(() -> displayError("Error processing " + csvFile.getName() + ": " + e.getMessage()));
-                    }
-                                // Provide some delay to allow visibility of processing feedback, if needed.
-                                Thread.sleep(100); //slight delay
+                            if (!processOneCsvFile(csvFile, outputFilePath)) {
+                                failedFiles.incrementAndGet();
                             }
-
-                            return null;
-                        }
+                            int done = completedFiles.incrementAndGet();
+                            updateProgress(done, totalFiles);
+                            updateMessage(done + " of " + totalFiles + " files processed (last: " + csvFile.getName() + ")");
+                        }));
+                    }
+                    for (Future<?> future : futures) {
+                        future.get(); // processOneCsvFile reports and absorbs its own file's failure, so this only waits
+                    }
+                } finally {
+                    // On cancel, interrupt the running files and drop the queued ones
+                    filePool.shutdownNow();
+                }
+                return failedFiles.get();
+            }
 
             @Override
             protected void succeeded() {
                 super.succeeded();
-                Platform.runLater(() -> {
+                int failed = getValue();
+                if (failed == 0) {
                     displayInfo("All files processed successfully.");
-                    layout.getChildren().remove(progressIndicator); // Remove ProgressIndicator
-                });
+                    finishBatch("Done: " + inputFiles.size() + " file(s) processed.");
+                } else {
+                    displayError(failed + " of " + inputFiles.size() + " file(s) could not be processed; see the messages above.");
+                    finishBatch("Done: " + inputFiles.size() + " file(s) processed, " + failed + " failed.");
+                }
+            }
+
+            @Override
+            protected void cancelled() {
+                super.cancelled();
+                displayInfo("File processing cancelled.");
+                finishBatch("Cancelled.");
             }
 
             @Override
             protected void failed() {
                 super.failed();
                 Throwable error = getException(); // Get the actual exception
-                Platform.runLater(() -> {
-                    displayError("File processing failed: " + (error != null ? error.getMessage() : "Unknown error"));
-                    layout.getChildren().remove(progressIndicator); // Remove ProgressIndicator
-                });
+                displayError("File processing failed: " + (error != null ? error.getMessage() : "Unknown error"));
+                finishBatch("Failed.");
             }
         };
 
-        new Thread(processingTask).start(); // Start the processing task in a new thread
+        batchTask = processingTask;
+        progressBar.progressProperty().bind(processingTask.progressProperty());
+        progressLabel.textProperty().bind(processingTask.messageProperty());
+        cancelBatchButton.setDisable(false);
+
+        Thread batchThread = new Thread(processingTask, "csv-batch"); // Start the processing task in a new thread
+        batchThread.setDaemon(true);
+        batchThread.start();
     }
 
+    // Runs on a batch worker thread; UI updates go through Platform.runLater. Any failure is reported
+    // against this file and absorbed, so the rest of the batch carries on; returns false if it failed.
+    private boolean processOneCsvFile(File csvFile, String outputFilePath) {
+        try {
+            ProcessingResult result = csvProcessor.processCsv(csvFile.getAbsolutePath(), outputFilePath, messageReporter);
+            if (result == null) {
+                return false; // processCsv has said why nothing was written
+            }
+            File outputFile = new File(outputFilePath);
+            Platform.runLater(() -> processedExcelFiles.add(outputFile));
+
+            // The run summary already knows whether anything went to the error sheets
+            if (result.hasErrors()) {
+                displayError("There are errors in this file. Please check: " + csvFile.getName() + " 😥");
+            } else {
+                displayInfo("There is no error in the file! " + csvFile.getName() + "😊");
+            }
+        } catch (InterruptedIOException e) {
+            displayInfo("Cancelled: " + csvFile.getName());
+        } catch (IOException e) {
+            displayError("Error processing " + csvFile.getName() + ": " + e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            e.printStackTrace(); // Unexpected, so keep the full trace in the console
+            displayError("Error processing " + csvFile.getName() + ": " + (e.getMessage() != null ? e.getMessage() : e.toString()));
+            return false;
+        }
+        return true;
+    }
+
+    // Called on the FX thread when the batch task ends, whichever way it ended
+    private void finishBatch(String statusText) {
+        progressBar.progressProperty().unbind();
+        progressLabel.textProperty().unbind();
+        progressLabel.setText(statusText);
+        cancelBatchButton.setDisable(true);
+        batchTask = null;
+    }
+
+
+    // Opens the SKU index on first use. Runs only open an index that an import has already created;
+    // importing creates it. Returns null when there is none or it cannot be opened.
+    private SkuIndex openSkuIndex(boolean create) {
+        if (skuIndex == null && (create || SKU_INDEX_FILE.isFile())) {
+            try {
+                skuIndex = SkuIndex.open(SKU_INDEX_FILE);
+                processingOptions.setSkuIndex(skuIndex);
+                if (skuIndex.size() > 0) {
+                    displayInfo("SKU index loaded: " + skuIndex.size() + " known SKUs.");
+                }
+            } catch (IOException e) {
+                displayWarning("SKU index not available, SKUs are only checked within each file: " + e.getMessage());
+            }
+        }
+        return skuIndex;
+    }
+
+    @Override
+    public void stop() {
+        if (skuIndex != null) {
+            try {
+                skuIndex.close();
+            } catch (IOException e) {
+                System.err.println("Failed to save the SKU index: " + e.getMessage());
+            }
+        }
+    }
+
+    // Replaces the SKU index with the SKUs of a database export (productcode, product_code, sku or Variant SKU column)
+    private void importSkuExport() {
+        if (openSkuIndex(true) == null) {
+            displayError("SKU index is not available.");
+            return;
+        }
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Select SKU Export CSV");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
+        String recentInputFolder = loadPreference(RECENT_INPUT_FOLDER_KEY, "");
+        if (!recentInputFolder.isEmpty()) {
+            fileChooser.setInitialDirectory(new File(recentInputFolder));
+        }
+        File exportFile = fileChooser.showOpenDialog(new Stage());
+        if (exportFile == null) {
+            return;
+        }
+
+        Task<Void> importTask = new Task<Void>() {
+            @Override
+            protected Void call() throws Exception {
+                int size = skuIndex.rebuildFrom(exportFile, null);
+                displayInfo("SKU index rebuilt from " + exportFile.getName() + ": " + size + " SKUs.");
+                return null;
+            }
+
+            @Override
+            protected void failed() {
+                displayError("Failed to import SKU export: " + getException().getMessage());
+            }
+        };
+        Thread importThread = new Thread(importTask, "sku-index-import");
+        importThread.setDaemon(true);
+        importThread.start();
+    }
 
     private void chooseProcessedFileAndGenerateCorrectedOutput() {
         if (processedExcelFiles.isEmpty()) {
@@ -1199,127 +1182,12 @@ public class CSVProcessorApp extends Application {
             return;
         }
 
-        try (FileInputStream fis = new FileInputStream(selectedExcelFile);
-             Workbook workbook = new XSSFWorkbook(fis)) {
-
-            Sheet successSheet = workbook.getSheet("Success");
-            if (successSheet == null) {
-                displayError("Sheet 'Success' not found in the selected Excel file.");
-                return;
-            }
-
-            Workbook newWorkbook = new XSSFWorkbook();
-            Sheet newSheet = newWorkbook.createSheet("Filtered Success");
-
-            Map<String, Integer> columnIndexMap = new HashMap<>();
-            columnIndexMap.put("Handle", 0);
-            columnIndexMap.put("Title", 1);
-            columnIndexMap.put("Option1 Name", 8);
-            columnIndexMap.put("Option1 Value", 9);
-            columnIndexMap.put("Option2 Name", 11);
-            columnIndexMap.put("Option2 Value", 12);
-            columnIndexMap.put("Variant SKU", 17);
-
-            Row headerRow = newSheet.createRow(0);
-            for (Map.Entry<String, Integer> entry : columnIndexMap.entrySet()) {
-                Cell cell = headerRow.createCell(entry.getValue());
-                cell.setCellValue(entry.getKey());
-            }
-
-            Map<String, Integer> sourceColumnIndexMap = new HashMap<>();
-            Row headerRowSource = successSheet.getRow(1);
-            if (headerRowSource != null) {
-                for (int i = 0; i < headerRowSource.getLastCellNum(); i++) {
-                    Cell cell = headerRowSource.getCell(i);
-                    if (cell != null) {
-                        String cellValue = cell.getStringCellValue().trim();
-                        sourceColumnIndexMap.put(cellValue, i);
-                    }
-                }
-            }
-
-            Set<String> requiredSourceColumns = new HashSet<>(columnIndexMap.keySet());
-            requiredSourceColumns.add("Meta Status");
-            if (!sourceColumnIndexMap.keySet().containsAll(requiredSourceColumns)) {
-                requiredSourceColumns.removeAll(sourceColumnIndexMap.keySet());
-                displayError("Missing required columns in 'Success' sheet: " + String.join(", ", requiredSourceColumns));
+        try {
+            CorrectedOutputGenerator.CorrectedOutput correctedOutput = new CorrectedOutputGenerator().generate(selectedExcelFile, messageReporter);
+            if (correctedOutput == null) {
                 return;
             }
 
-            List<String> variantSKUs = new ArrayList<>();
-
-            int rowIndex = 1;
-            for (int i = 2; i <= successSheet.getLastRowNum(); i++) {
-                Row dataRow = successSheet.getRow(i);
-                if (dataRow != null) {
-                    Integer metaStatusColumnIndex = sourceColumnIndexMap.get("Meta Status");
-                    if (metaStatusColumnIndex != null) {
-                        Cell metaStatusCell = dataRow.getCell(metaStatusColumnIndex);
-                        String metaStatus = (metaStatusCell != null && metaStatusCell.getCellType() == CellType.STRING) ? metaStatusCell.getStringCellValue() : "";
-
-                        if (!metaStatus.equals("Meta product is missing") && !metaStatus.equals("Meta product has errors")) {
-                            Row newRow = newSheet.createRow(rowIndex++);
-
-                            for (Map.Entry<String, Integer> entry : columnIndexMap.entrySet()) {
-                                String columnName = entry.getKey();
-                                Integer destColumnIndex = entry.getValue();
-                                Integer sourceColumnIndex = sourceColumnIndexMap.get(columnName);
-
-                                if (sourceColumnIndex != null) {
-                                    Cell sourceCell = dataRow.getCell(sourceColumnIndex);
-                                    Cell newCell = newRow.createCell(destColumnIndex);
-
-                                    if (sourceCell != null) {
-                                        switch (sourceCell.getCellType()) {
-                                            case STRING:
-                                                newCell.setCellValue(sourceCell.getStringCellValue());
-                                                if (columnName.equals("Variant SKU")) {
-                                                    variantSKUs.add("('" + sourceCell.getStringCellValue() + "')");
-                                                }
-                                                break;
-                                            case NUMERIC:
-                                                newCell.setCellValue(sourceCell.getNumericCellValue());
-                                                break;
-                                            case BOOLEAN:
-                                                newCell.setCellValue(sourceCell.getBooleanCellValue());
-                                                break;
-                                            case FORMULA:
-                                                FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
-                                                CellValue cellValue = evaluator.evaluate(sourceCell);
-                                                switch (cellValue.getCellType()) {
-                                                    case STRING:
-                                                        newCell.setCellValue(cellValue.getStringValue());
-                                                        if (columnName.equals("Variant SKU")) {
-                                                            variantSKUs.add("('" + cellValue.getStringValue() + "')");
-                                                        }
-                                                        break;
-                                                    case NUMERIC:
-                                                        newCell.setCellValue(cellValue.getNumberValue());
-                                                        break;
-                                                    case BOOLEAN:
-                                                        newCell.setCellValue(cellValue.getBooleanValue());
-                                                        break;
-                                                    default:
-                                                        newCell.setCellValue("");
-                                                        break;
-                                                }
-                                                break;
-                                            default:
-                                                newCell.setCellValue("");
-                                                break;
-                                        }
-                                    } else {
-                                        newCell.setCellValue("");
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
-            String query = "SELECT \n    p.productcode\nFROM \n    (VALUES " + String.join(", ", variantSKUs) + ") AS p(productcode)\nLEFT JOIN \n    productitem pi ON p.productcode = pi.productcode\nWHERE \n    pi.productcode IS NULL;";
-
             FileChooser fileChooser = new FileChooser();
             fileChooser.setTitle("Save Corrected Output");
             fileChooser.setInitialFileName("CorrectedOutput.xlsx");
@@ -1333,19 +1201,21 @@ public class CSVProcessorApp extends Application {
 
 
 
-            if (outputFile != null) {
-                try (FileOutputStream outputStream = new FileOutputStream(outputFile)) {
-                    newWorkbook.write(outputStream);
-                    displayInfo("Corrected output saved successfully.");
+            try (Workbook newWorkbook = correctedOutput.getWorkbook()) {
+                if (outputFile != null) {
+                    try (FileOutputStream outputStream = new FileOutputStream(outputFile)) {
+                        newWorkbook.write(outputStream);
+                        displayInfo("Corrected output saved successfully.");
+                    }
+                    processedExcelFiles.add(outputFile);
+                } else {
+                    displayInfo("File save canceled.");
                 }
-                processedExcelFiles.add(outputFile);
-            } else {
-                displayInfo("File save canceled.");
             }
 
             if (sqlFile != null) {
                 try (FileWriter writer = new FileWriter(sqlFile)) {
-                    writer.write(query);
+                    writer.write(correctedOutput.getSqlQuery());
                     displayInfo("SQL query saved successfully.");
                 } catch (IOException e) {
                     displayError("Error saving SQL file: " + e.getMessage());
@@ -1520,551 +1390,16 @@ public class CSVProcessorApp extends Application {
         });
     }
 
+    private void displayWarning(String message) {
+        Platform.runLater(() -> {
+            errorTextArea.appendText("Warning: " + message + "\n");
+        });
+    }
+
     private String getStackTraceString(Exception e) {
         StringWriter sw = new StringWriter();
         PrintWriter pw = new PrintWriter(sw);
         e.printStackTrace(pw);
         return sw.toString();
     }
-
-
-    // Inner class to encapsulate CSV processing logic
-    public static class CsvProcessor {
-
-        private static final String[] REQUIRED_HEADERS = {"Handle", "Title", "Product Category", "Option1 Name", "Option1 Value", "Option2 Name", "Option2 Value", "Variant SKU"};
-
-        private static final Set<String> VALID_OPTION_TYPES = new HashSet<>(Arrays.asList("color", "colour", "size", "category", "group", "title"));
-
-        public boolean processCsv(String inputFilePath, String outputFilePath, TextArea errorTextArea) throws IOException {
-            try {
-                if (!isFileWritable(outputFilePath)) {
-                    Platform.runLater(() -> errorTextArea.appendText("Error: The output file '" + outputFilePath + "' is open or locked by another process. Please close it and try again.\n"));
-                    return false;
-                }
-
-                Map<String, List<CSVRecord>> handleToRecordsMap = new HashMap<>();
-                Map<String, List<ProductError>> errors = new HashMap<>();
-                errors.put("Invalid - Duplicate SKUs", new ArrayList<>());
-                errors.put("Invalid Options", new ArrayList<>());
-                errors.put("Other Errors", new ArrayList<>());
-                List<String> existingMetaProductHandles = new ArrayList<>();  // Track meta product handles
-
-                Set<String> skuSet = new HashSet<>();
-                List<SuccessfulRecord> successfulRecords = new ArrayList<>(); // Changed to store additional info
-                 List<CSVRecord> imageEntries = new ArrayList<>();
-
-                try (BOMInputStream bomInputStream = new BOMInputStream(Files.newInputStream(Paths.get(inputFilePath)));
-                     CSVParser parser = new CSVParser(new InputStreamReader(bomInputStream, StandardCharsets.UTF_8),
-                             CSVFormat.DEFAULT.withHeader())) {
-
-                // Validate required headers
-                    Set<String> headersInFile = new HashSet<>(parser.getHeaderMap().keySet());
-                    List<String> missingHeaders = new ArrayList<>();
-                    Set<String> headersInFileNormalized = headersInFile.stream()
-                            .map(header -> header.trim().toLowerCase()) // Trim spaces & normalize case
-                            .collect(Collectors.toSet());
-
-                    for (String requiredHeader : REQUIRED_HEADERS) {
-                        if (!headersInFileNormalized.contains(requiredHeader.toLowerCase())) {
-                            missingHeaders.add(requiredHeader);
-                        }
-                    }
-
-                    if (!missingHeaders.isEmpty()) {
-                        String errorMessage = "Warning: The following required headers are missing from your CSV file: " + missingHeaders +
-                                ". Please update your CSV file headers to include: " + Arrays.toString(REQUIRED_HEADERS);
-                        Platform.runLater(() -> errorTextArea.appendText(errorMessage + "\n"));
-                        return false; // Returning false to indicate header validation failure
-                    }
-
-                    // Group records by handle and skip image entries
-                    List<CSVRecord> recordsToProcess = new ArrayList<>();
-                    for (CSVRecord record : parser) {
-                        boolean isImageEntry = record.get("Option1 Name").isEmpty() &&
-                                record.get("Option1 Value").isEmpty() &&
-                                record.get("Option2 Name").isEmpty() &&
-                                record.get("Option2 Value").isEmpty() &&
-                                record.get("Variant SKU").isEmpty();
-
-                        if (!isImageEntry) {
-                            recordsToProcess.add(record);
-                        } else {
-                            imageEntries.add(record);
-                        }
-                    }
-
-                    for (CSVRecord record : recordsToProcess) {
-                        String handle = record.get("Handle");
-                        handleToRecordsMap.computeIfAbsent(handle, k -> new ArrayList<>()).add(record);
-                    }
-
-                    // Process each handle group
-                    for (Map.Entry<String, List<CSVRecord>> entry : handleToRecordsMap.entrySet()) {
-                        String handle = entry.getKey();
-                        List<CSVRecord> records = entry.getValue();
-
-
-                        // Identify "Title/Default Title" Meta Products
-                        List<CSVRecord> titleDefaultMetaProducts = records.stream()
-                                .filter(r -> r.get("Option1 Name") != null && r.get("Option1 Name").equalsIgnoreCase("Title") &&
-                                        r.get("Option1 Value") != null && r.get("Option1 Value").equalsIgnoreCase("Default Title"))
-                                .collect(Collectors.toList());
-
-                        // Enforce Single "Title/Default Title" Meta Product per Handle
-                        if (titleDefaultMetaProducts.size() > 1) {
-                            for (CSVRecord metaRecord : titleDefaultMetaProducts) {
-                                errors.get("Other Errors").add(new ProductError(
-                                        "Only one meta product with Option1 Name 'Title' and Option1 Value 'Default Title' is allowed per handle.", metaRecord));
-                            }
-                            continue; // Skip further processing for this handle
-                        }
-
-                        // Check if it is meta product (contains valid title)
-                        List<CSVRecord> metaRecords = records.stream()
-                                .filter(r -> r.get("Title") != null && !r.get("Title").isEmpty())
-                                .collect(Collectors.toList());
-
-
-                        // Enforce Single "Valid Title" Meta Product per Handle
-                        if (metaRecords.size() > 1) {
-                            for (CSVRecord metaRecord : metaRecords) {
-                                errors.get("Other Errors").add(new ProductError(
-                                        "Valid title option must have only one record: " + metaRecords.size() + " found.", metaRecord));
-                            }
-                            continue;
-                        }
-
-                        // If it's a  valid "Title/Default Title" Meta Product or "Valid Title" Meta Product, check for handle uniqueness
-                        if (!titleDefaultMetaProducts.isEmpty() || !metaRecords.isEmpty()) {
-                            if (existingMetaProductHandles.contains(handle)) {
-                                for (CSVRecord metaRecord : titleDefaultMetaProducts.isEmpty() ? metaRecords : titleDefaultMetaProducts) {
-                                    errors.get("Other Errors").add(new ProductError(
-                                            "Meta product handle '" + handle + "' is not unique.", metaRecord));
-                                }
-                                continue; // Skip further processing for this handle
-                            }
-                            existingMetaProductHandles.add(handle);  // Add handle to the list
-                        }
-
-
-                        CSVRecord metaRecord = metaRecords.isEmpty() ? null : metaRecords.get(0);
-                        boolean hasMetaProductErrors = false;
-                        boolean hasOptionErrors = false; // Track option errors
-
-                        // Check if the handle has no meta product
-                        boolean hasNoMetaProduct = metaRecord == null;
-
-                        if (metaRecord != null && errors.values().stream()
-                                .flatMap(List::stream)
-                                .anyMatch(error -> error.handle.equals(handle) && error.errorLog.contains("Meta product must have a title"))) {
-                            hasMetaProductErrors = true;
-                        }
-
-                        // Check for suspected meta products (missing title)
-                        for (CSVRecord record : records) {
-                            String title = getCellValue(record, "Title");
-                            String option1Name = getCellValue(record, "Option1 Name");
-                            String option1Value = getCellValue(record, "Option1 Value");
-                            String option2Name = getCellValue(record, "Option2 Name");
-                            String option2Value = getCellValue(record, "Option2 Value");
-                            String sku = getCellValue(record, "Variant SKU");
-                            if (title.isEmpty() && !option1Name.isEmpty() && !option1Value.isEmpty() &&
-                                    !option2Name.isEmpty() && !option2Value.isEmpty() && !sku.isEmpty()) {
-                                errors.get("Other Errors").add(new ProductError(
-                                        "This record is suspected as a meta product with missing 'Title' value.", record));
-                            }
-                        }
-
-                        // Process each record under this handle
-                        for (CSVRecord record : records) {
-                            String title = getCellValue(record, "Title");
-                            String productCategory = getCellValue(record, "Product Category");
-                            String sku = getCellValue(record, "Variant SKU");
-                            String option1Name = getCellValue(record, "Option1 Name");
-                            String option1Value = getCellValue(record, "Option1 Value");
-                            String option2Name = getCellValue(record, "Option2 Name");
-                            String option2Value = getCellValue(record, "Option2 Value");
-
-                            // Validate option names for variants
-                            if (!record.equals(metaRecord)) {
-                                if (!option1Name.isEmpty() || !option2Name.isEmpty()) {
-                                    errors.get("Invalid Options").add(new ProductError(
-                                            "Variants cannot define their own option names.", record));
-                                }
-                            }
-
-                            // Validate SKU
-                            // Inside the inner loop:  for (CSVRecord record : records) {
-
-                            // Collect all errors for this record first
-                            List<ProductError> currentRecordErrors = new ArrayList<>();
-
-                            // Validate SKU
-                            if (sku.isEmpty()) {
-                                currentRecordErrors.add(new ProductError("Missing SKU", record, metaRecord != null ? metaRecord.get("Title") : ""));
-                                errors.get("Invalid - Duplicate SKUs").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                            } else if (skuSet.contains(sku)) {
-                                currentRecordErrors.add(new ProductError("Duplicate SKU found", record, metaRecord != null ? metaRecord.get("Title") : ""));
-                                errors.get("Invalid - Duplicate SKUs").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                            } else {
-                                skuSet.add(sku);
-                            }
-
-                            if (record.equals(metaRecord)) { //Meta Product Validations
-                                if (title.isEmpty()) {
-                                    currentRecordErrors.add(new ProductError("Meta product must have a title", record));
-                                    errors.get("Other Errors").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                }
-
-                                // Meta product cannot have both Option1 Name and Option2 Name empty.
-                                if (option1Name.isEmpty() && option2Name.isEmpty()) {
-                                    currentRecordErrors.add(new ProductError("Meta product cannot have both Option1 Name and Option2 Name empty", record));
-                                    errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                    hasOptionErrors = true;
-                                }
-
-                                if (!option1Name.isEmpty() && !VALID_OPTION_TYPES.contains(option1Name.toLowerCase())) {
-                                    currentRecordErrors.add(new ProductError("Invalid Option1 Name: " + option1Name, record));
-                                    errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                    hasOptionErrors = true;
-                                }
-
-                                if (option2Name.equalsIgnoreCase("title")) {
-                                    currentRecordErrors.add(new ProductError("Option2 Name cannot be 'title'", record));
-                                    errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                    hasOptionErrors = true;
-                                }
-
-                                if (!option2Name.isEmpty() && !VALID_OPTION_TYPES.contains(option2Name.toLowerCase())) {
-                                    currentRecordErrors.add(new ProductError("Invalid Option2 Name: " + option2Name, record));
-                                    errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                    hasOptionErrors = true;
-                                }
-
-                                if (!option1Name.isEmpty() && option1Name.equalsIgnoreCase(option2Name)) {
-                                    currentRecordErrors.add(new ProductError("Option1 Name and Option2 Name cannot be the same", record));
-                                    errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                    hasOptionErrors = true;
-                                }
-
-                                // New Validation: Color vs. Colour
-                                if (option1Name.equalsIgnoreCase("color") && option2Name.equalsIgnoreCase("colour") ||
-                                        option1Name.equalsIgnoreCase("colour") && option2Name.equalsIgnoreCase("color")) {
-                                    currentRecordErrors.add(new ProductError("Option names cannot be 'color' and 'colour' simultaneously.  They should be identical.", record));
-                                    errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                    hasOptionErrors = true;
-                                }
-                                if (!option1Name.isEmpty() && option1Value.isEmpty()) {
-                                    currentRecordErrors.add(new ProductError("Option1 Value cannot be empty when Option1 Name is present", record));
-                                    errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                    hasOptionErrors = true;
-                                }
-                                if (!option2Name.isEmpty() && option2Value.isEmpty()) {
-                                    currentRecordErrors.add(new ProductError("Option2 Value cannot be empty when Option2 Name is present", record));
-                                    errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                    hasOptionErrors = true;
-                                }
-                            } else { //Variant Product Validations
-                                if (!title.isEmpty()) {
-                                    currentRecordErrors.add(new ProductError("Variants cannot have a title", record));
-                                    errors.get("Other Errors").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                }
-
-                                // Check if the variant has values for meta product options
-                                if (metaRecord != null) {
-                                    String metaOption1Name = metaRecord.get("Option1 Name");
-                                    String metaOption2Name = metaRecord.get("Option2 Name");
-
-                                    if (!metaOption1Name.isEmpty() && option1Value.isEmpty()) {
-                                        currentRecordErrors.add(new ProductError("Missing value for inherited option: " + metaOption1Name, record));
-                                        errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                        hasOptionErrors = true;
-                                    }
-                                    if (!metaOption2Name.isEmpty() && option2Value.isEmpty()) {
-                                        currentRecordErrors.add(new ProductError("Missing value for inherited option: " + metaOption2Name, record));
-                                        errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                        hasOptionErrors = true;
-                                    }
-                                }
-                            }
-
-                            // Custom Validations
-                            if (option1Name.equalsIgnoreCase("title")) {
-                                if (!option1Value.equalsIgnoreCase("Default Title")) {
-                                    currentRecordErrors.add(new ProductError("Option1 Value must be 'Default Title' when Option1 Name is 'title'", record));
-                                    errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                    hasOptionErrors = true;
-                                }
-                                if (!option2Name.isEmpty()) {
-                                    currentRecordErrors.add(new ProductError("Option2 Name must be empty when Option1 Name is 'title'", record));
-                                    errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                    hasOptionErrors = true;
-                                }
-
-                                // Check for variants (more than one record for the handle)
-                                if (records.size() > 1) {
-                                    currentRecordErrors.add(new ProductError("Variants are not allowed when Option1 Name is 'title'", record));
-                                    errors.get("Invalid Options").add(currentRecordErrors.get(currentRecordErrors.size() - 1));
-                                    hasOptionErrors = true;
-                                }
-                            }
-
-                            String metaStatus = "";
-                            if (hasNoMetaProduct) {
-                                metaStatus = "Meta product is missing";
-                            } else if (hasMetaProductErrors || hasOptionErrors) {
-                                metaStatus = "Meta product has errors";
-                            }
-
-                            //  Determine if the variant itself has ANY errors (including those found above)
-                            boolean hasVariantErrors = !currentRecordErrors.isEmpty();
-
-                            if (hasVariantErrors) {
-                                //Add meta status to all generated errors
-                                for (ProductError error : currentRecordErrors) {
-                                    error.metaStatus = metaStatus;
-                                }
-                            } else {
-                                // If the variant has no errors of its own, but the meta product is missing or has errors,
-                                // then add it to successful records with the meta status.
-                                if (!metaStatus.isEmpty()) {
-                                    successfulRecords.add(new SuccessfulRecord(record, metaStatus));
-                                } else {
-                                    // Otherwise, it's a completely successful record.
-                                    successfulRecords.add(new SuccessfulRecord(record, ""));
-                                }
-                            }
-                        }
-
-                    }
-                }
-
-                System.out.println("Skipped image entries: " + imageEntries.size());
-
-                writeErrorsToExcel(outputFilePath, errors);
-                writeSuccessfulRecordsToExcel(outputFilePath, successfulRecords);
-                System.out.println("Processing completed. Errors written to: " + outputFilePath);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            return true;
-        }
-
-
-        // Helper method to find the header row dynamically
-        private int findHeaderRow(Sheet sheet, String[] expectedHeaders) {
-            for (Row row : sheet) {
-                boolean isHeaderRow = true;
-                for (int i = 0; i < expectedHeaders.length; i++) {
-                    Cell cell = row.getCell(i);
-                    if (cell == null || !cell.getStringCellValue().equals(expectedHeaders[i])) {
-                        isHeaderRow = false;
-                        break;
-                    }
-                }
-                if (isHeaderRow) {
-                    return row.getRowNum(); // Return the index of the header row
-                }
-            }
-            return -1; // Header row not found
-        }
-
-
-        private static void writeErrorsToExcel(String outputFilePath, Map<String, List<ProductError>> errors) throws IOException {
-            try (Workbook workbook = new XSSFWorkbook()) {
-                for (Map.Entry<String, List<ProductError>> entry : errors.entrySet()) {
-                    writeErrorsToSheet(workbook, entry.getKey(), entry.getValue());
-                }
-                try (FileOutputStream outputStream = new FileOutputStream(outputFilePath)) {
-                    workbook.write(outputStream);
-                }
-            } catch (FileNotFoundException e) {
-                // Handle permission denied error specifically
-                throw new IOException("Permission denied to write to: " + outputFilePath + ". Please ensure the file is not open in another application or adjust your file permissions.", e);
-            }
-        }
-
-        private static void writeErrorsToSheet(Workbook workbook, String sheetName, List<ProductError> productErrors) {
-            Sheet sheet = workbook.createSheet(sheetName);
-            Row countRow = sheet.createRow(0);
-            countRow.createCell(0).setCellValue("Count of " + sheetName + ": " + productErrors.size());
-
-            Row headerRow = sheet.createRow(1);
-            String[] headers = {"Error Log", "Handle", "Title", "Product Category", "Option 1 Name", "Option 1 Value", "Option 2 Name", "Option 2 Value", "Variant SKU", "Meta Status"};
-            for (int i = 0; i < headers.length; i++) {
-                headerRow.createCell(i).setCellValue(headers[i]);
-            }
-
-            int rowNum = 2;
-            for (ProductError error : productErrors) {
-                Row row = sheet.createRow(rowNum++);
-                row.createCell(0).setCellValue(error.errorLog);
-                row.createCell(1).setCellValue(error.handle);
-                row.createCell(2).setCellValue(error.title);
-                row.createCell(3).setCellValue(error.productCategory);
-                row.createCell(4).setCellValue(error.option1Name);
-                row.createCell(5).setCellValue(error.option1Value);
-                row.createCell(6).setCellValue(error.option2Name);
-                row.createCell(7).setCellValue(error.option2Value);
-                row.createCell(8).setCellValue(error.variantSKU);
-                row.createCell(9).setCellValue(error.metaStatus != null ? error.metaStatus : "");
-            }
-        }
-
-        private static void writeSuccessfulRecordsToExcel(String outputFilePath, List<SuccessfulRecord> successfulRecords) throws IOException {
-            try (FileInputStream fileInputStream = new FileInputStream(outputFilePath);
-                 Workbook workbook = new XSSFWorkbook(fileInputStream)) {
-                Sheet successSheet = workbook.createSheet("Success");
-                Row countRow = successSheet.createRow(0);
-                countRow.createCell(0).setCellValue("Count of Successful Records: " + successfulRecords.size());
-
-                Row headerRow = successSheet.createRow(1);
-                String[] headers = {"Handle", "Title", "Product Category", "Option1 Name", "Option1 Value", "Option2 Name", "Option2 Value", "Variant SKU", "Meta Status"};
-                for (int i = 0; i < headers.length; i++) {
-                    headerRow.createCell(i).setCellValue(headers[i]);
-                }
-
-                int rowNum = 2;
-                for (SuccessfulRecord successfulRecord : successfulRecords) {
-                    CSVRecord record = successfulRecord.record;
-                    Row row = successSheet.createRow(rowNum++);
-                    row.createCell(0).setCellValue(record.get("Handle"));
-                    row.createCell(1).setCellValue(record.get("Title"));
-                    row.createCell(2).setCellValue(record.get("Product Category"));
-                    row.createCell(3).setCellValue(record.get("Option1 Name"));
-                    row.createCell(4).setCellValue(record.get("Option1 Value"));
-                    row.createCell(5).setCellValue(record.get("Option2 Name"));
-                    row.createCell(6).setCellValue(record.get("Option2 Value"));
-                    row.createCell(7).setCellValue(record.get("Variant SKU"));
-                    row.createCell(8).setCellValue(successfulRecord.metaStatus);
-                }
-
-                // Write to the file
-                try (FileOutputStream fileOut = new FileOutputStream(outputFilePath)) {
-                    workbook.write(fileOut);
-                }
-            }
-        }
-
-        private static boolean isFileWritable(String filePath) {
-            File file = new File(filePath);
-            return !file.exists() || (Files.isWritable(Paths.get(filePath)) && !isFileLocked(String.valueOf(file)));
-        }
-
-        private static boolean isFileLocked(String file) {
-            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
-                return false;
-            } catch (IOException e) {
-                return true;
-            }
-        }
-
-        private static String getCellValue(CSVRecord record, String headerName) {
-            try {
-                return record.get(headerName);
-            } catch (IllegalArgumentException e) {
-                return ""; // Handle missing header gracefully
-            }
-        }
-
-
-
-
-        public boolean hasErrors(File excelFile) throws IOException {
-            try (FileInputStream fileInputStream = new FileInputStream(excelFile);
-                 Workbook workbook = new XSSFWorkbook(fileInputStream)) {
-
-                // Define the expected headers for error sheets
-                String[] expectedErrorHeaders = {"Error Log", "Handle", "Title", "Product Category", "Option 1 Name", "Option 1 Value", "Option 2 Name", "Option 2 Value", "Variant SKU", "Meta Status"};
-
-                // Check if any error sheet has entries
-                String[] errorSheetNames = {"Invalid - Duplicate SKUs", "Invalid Options", "Other Errors"};
-                for (String sheetName : errorSheetNames) {
-                    Sheet sheet = workbook.getSheet(sheetName);
-                    if (sheet != null) {
-                        // Find the header row dynamically
-                        int headerRowIndex = findHeaderRow(sheet, expectedErrorHeaders);
-                        if (headerRowIndex != -1) {
-                            // Check if there are any rows after the header row
-                            if (sheet.getPhysicalNumberOfRows() > headerRowIndex + 1) {
-                                return true; // Errors found
-                            }
-                        }
-                    }
-                }
-
-                // Define the expected headers for the success sheet
-                String[] expectedSuccessHeaders = {"Handle", "Title", "Product Category", "Option1 Name", "Option1 Value", "Option2 Name", "Option2 Value", "Variant SKU", "Meta Status"};
-
-                // Check if the "Success" sheet has any records with meta status indicating issues
-                Sheet successSheet = workbook.getSheet("Success");
-                if (successSheet != null) {
-                    // Find the header row dynamically
-                    int headerRowIndex = findHeaderRow(successSheet, expectedSuccessHeaders);
-                    if (headerRowIndex != -1) {
-                        // Iterate through rows after the header row
-                        for (int i = headerRowIndex + 1; i <= successSheet.getLastRowNum(); i++) {
-                            Row row = successSheet.getRow(i);
-                            if (row != null) {
-                                Cell metaStatusCell = row.getCell(8); // Assuming meta status is in the 9th column (index 8)
-                                if (metaStatusCell != null && !metaStatusCell.getStringCellValue().isEmpty()) {
-                                    return true; // Meta issues found
-                                }
-                            }
-                        }
-                    }
-                }
-
-                return false; // No errors found
-            }
-        }
-
-
-
-        static class ProductError {
-            String errorLog;
-            String handle;
-            String title;
-            String productCategory;
-            String option1Name;
-            String option1Value;
-            String option2Name;
-            String option2Value;
-            String variantSKU;
-            String metaStatus;
-
-            public ProductError(String errorLog, CSVRecord record) {
-                this.errorLog = errorLog;
-                this.handle = record.get("Handle");
-                this.title = record.get("Title");
-                this.productCategory = record.get("Product Category");
-                this.option1Name = record.get("Option1 Name");
-                this.option1Value = record.get("Option1 Value");
-                this.option2Name = record.get("Option2 Name");
-                this.option2Value = record.get("Option2 Value");
-                this.variantSKU = record.get("Variant SKU");
-                this.metaStatus = null;
-            }
-
-            public ProductError(String errorLog, CSVRecord record, String metaTitle) {
-                this(errorLog, record);
-                this.title = metaTitle;
-            }
-        }
-
-        static class SuccessfulRecord {
-            CSVRecord record;
-            String metaStatus;
-
-            public SuccessfulRecord(CSVRecord record, String metaStatus) {
-                this.record = record;
-                this.metaStatus = metaStatus;
-            }
-        }
-
-
-
-    }
 }
-
-
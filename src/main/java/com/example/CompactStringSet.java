@@ -0,0 +1,91 @@
+package com.example;
+
+/**
+ * Open-addressing hash set of strings. Keys and their hash codes live in two parallel arrays, so
+ * there is no per-entry node object as in {@link java.util.HashSet}; a member costs roughly
+ * 12 bytes of table space plus the string itself, which the caller usually retains anyway.
+ * Not thread-safe, null keys are not allowed.
+ */
+final class CompactStringSet {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private String[] keys;
+    private int[] hashes;
+    private int size;
+    private int threshold;
+
+    CompactStringSet() {
+        this(16);
+    }
+
+    CompactStringSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /** Adds the key; returns false if it was already present. */
+    boolean add(String key) {
+        int hash = mix(key.hashCode());
+        int slot = findSlot(key, hash);
+        if (keys[slot] != null) {
+            return false;
+        }
+        keys[slot] = key;
+        hashes[slot] = hash;
+        if (++size > threshold) {
+            resize();
+        }
+        return true;
+    }
+
+    boolean contains(String key) {
+        return keys[findSlot(key, mix(key.hashCode()))] != null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Linear probing: returns the slot holding the key, or the empty slot where it would go
+    private int findSlot(String key, int hash) {
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && keys[slot].equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        allocate(oldKeys.length << 1);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    // Spreads String.hashCode() so sequential keys (sku-001, sku-002, ...) don't cluster
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
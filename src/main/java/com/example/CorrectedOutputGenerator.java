@@ -0,0 +1,174 @@
+package com.example;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the "Corrected Output" from a processed workbook: the Success rows whose meta product is
+ * usable, in a "Filtered Success" workbook, plus a SQL query listing which of their SKUs are not
+ * in productitem yet. Has no UI dependencies; the app asks where to save the results.
+ */
+class CorrectedOutputGenerator {
+
+    /** The filtered workbook and the SKU query; the caller writes and closes the workbook. */
+    static final class CorrectedOutput {
+        private final Workbook workbook;
+        private final String sqlQuery;
+
+        CorrectedOutput(Workbook workbook, String sqlQuery) {
+            this.workbook = workbook;
+            this.sqlQuery = sqlQuery;
+        }
+
+        Workbook getWorkbook() {
+            return workbook;
+        }
+
+        String getSqlQuery() {
+            return sqlQuery;
+        }
+    }
+
+    /** Returns null, after reporting why, if the workbook has no usable Success sheet. */
+    CorrectedOutput generate(File processedExcelFile, ProcessingReporter reporter) throws IOException {
+        try (FileInputStream fis = new FileInputStream(processedExcelFile);
+             Workbook workbook = new XSSFWorkbook(fis)) {
+
+            Sheet successSheet = workbook.getSheet("Success");
+            if (successSheet == null) {
+                reporter.error("Sheet 'Success' not found in the selected Excel file.");
+                return null;
+            }
+
+            Workbook newWorkbook = new XSSFWorkbook();
+            Sheet newSheet = newWorkbook.createSheet("Filtered Success");
+
+            Map<String, Integer> columnIndexMap = new HashMap<>();
+            columnIndexMap.put("Handle", 0);
+            columnIndexMap.put("Title", 1);
+            columnIndexMap.put("Option1 Name", 8);
+            columnIndexMap.put("Option1 Value", 9);
+            columnIndexMap.put("Option2 Name", 11);
+            columnIndexMap.put("Option2 Value", 12);
+            columnIndexMap.put("Variant SKU", 17);
+
+            Row headerRow = newSheet.createRow(0);
+            for (Map.Entry<String, Integer> entry : columnIndexMap.entrySet()) {
+                Cell cell = headerRow.createCell(entry.getValue());
+                cell.setCellValue(entry.getKey());
+            }
+
+            Map<String, Integer> sourceColumnIndexMap = new HashMap<>();
+            Row headerRowSource = successSheet.getRow(1);
+            if (headerRowSource != null) {
+                for (int i = 0; i < headerRowSource.getLastCellNum(); i++) {
+                    Cell cell = headerRowSource.getCell(i);
+                    if (cell != null) {
+                        String cellValue = cell.getStringCellValue().trim();
+                        sourceColumnIndexMap.put(cellValue, i);
+                    }
+                }
+            }
+
+            Set<String> requiredSourceColumns = new HashSet<>(columnIndexMap.keySet());
+            requiredSourceColumns.add("Meta Status");
+            if (!sourceColumnIndexMap.keySet().containsAll(requiredSourceColumns)) {
+                requiredSourceColumns.removeAll(sourceColumnIndexMap.keySet());
+                newWorkbook.close();
+                reporter.error("Missing required columns in 'Success' sheet: " + String.join(", ", requiredSourceColumns));
+                return null;
+            }
+
+            List<String> variantSKUs = new ArrayList<>();
+
+            int rowIndex = 1;
+            for (int i = 2; i <= successSheet.getLastRowNum(); i++) {
+                Row dataRow = successSheet.getRow(i);
+                if (dataRow != null) {
+                    Integer metaStatusColumnIndex = sourceColumnIndexMap.get("Meta Status");
+                    if (metaStatusColumnIndex != null) {
+                        Cell metaStatusCell = dataRow.getCell(metaStatusColumnIndex);
+                        String metaStatus = (metaStatusCell != null && metaStatusCell.getCellType() == CellType.STRING) ? metaStatusCell.getStringCellValue() : "";
+
+                        if (!metaStatus.equals("Meta product is missing") && !metaStatus.equals("Meta product has errors")) {
+                            Row newRow = newSheet.createRow(rowIndex++);
+
+                            for (Map.Entry<String, Integer> entry : columnIndexMap.entrySet()) {
+                                String columnName = entry.getKey();
+                                Integer destColumnIndex = entry.getValue();
+                                Integer sourceColumnIndex = sourceColumnIndexMap.get(columnName);
+
+                                if (sourceColumnIndex != null) {
+                                    Cell sourceCell = dataRow.getCell(sourceColumnIndex);
+                                    Cell newCell = newRow.createCell(destColumnIndex);
+
+                                    if (sourceCell != null) {
+                                        switch (sourceCell.getCellType()) {
+                                            case STRING:
+                                                newCell.setCellValue(sourceCell.getStringCellValue());
+                                                if (columnName.equals("Variant SKU")) {
+                                                    variantSKUs.add("('" + sourceCell.getStringCellValue() + "')");
+                                                }
+                                                break;
+                                            case NUMERIC:
+                                                newCell.setCellValue(sourceCell.getNumericCellValue());
+                                                break;
+                                            case BOOLEAN:
+                                                newCell.setCellValue(sourceCell.getBooleanCellValue());
+                                                break;
+                                            case FORMULA:
+                                                FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+                                                CellValue cellValue = evaluator.evaluate(sourceCell);
+                                                switch (cellValue.getCellType()) {
+                                                    case STRING:
+                                                        newCell.setCellValue(cellValue.getStringValue());
+                                                        if (columnName.equals("Variant SKU")) {
+                                                            variantSKUs.add("('" + cellValue.getStringValue() + "')");
+                                                        }
+                                                        break;
+                                                    case NUMERIC:
+                                                        newCell.setCellValue(cellValue.getNumberValue());
+                                                        break;
+                                                    case BOOLEAN:
+                                                        newCell.setCellValue(cellValue.getBooleanValue());
+                                                        break;
+                                                    default:
+                                                        newCell.setCellValue("");
+                                                        break;
+                                                }
+                                                break;
+                                            default:
+                                                newCell.setCellValue("");
+                                                break;
+                                        }
+                                    } else {
+                                        newCell.setCellValue("");
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            String query = "SELECT \n    p.productcode\nFROM \n    (VALUES " + String.join(", ", variantSKUs) + ") AS p(productcode)\nLEFT JOIN \n    productitem pi ON p.productcode = pi.productcode\nWHERE \n    pi.productcode IS NULL;";
+            return new CorrectedOutput(newWorkbook, query);
+        }
+    }
+}
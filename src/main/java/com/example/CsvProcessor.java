@@ -0,0 +1,855 @@
+package com.example;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Validates Shopify product CSVs and writes the error and Success sheets. Has no UI dependencies:
+ * messages go to a {@link ProcessingReporter}, so the same code runs under the JavaFX app and the CLI.
+ */
+public class CsvProcessor {
+
+    private static final String[] REQUIRED_HEADERS = ProductSchema.COLUMN_NAMES;
+
+    static final String DUPLICATE_SKUS_SHEET = "Invalid - Duplicate SKUs";
+    static final String INVALID_OPTIONS_SHEET = "Invalid Options";
+    static final String OTHER_ERRORS_SHEET = "Other Errors";
+    static final String SUCCESS_SHEET = "Success";
+
+    // Below this many handle groups the fork/join overhead outweighs the gain
+    private static final int PARALLEL_VALIDATION_MIN_GROUPS = 2048;
+    private static final int PARALLEL_VALIDATION_BATCH_PER_THREAD = 512;
+
+    // Spill mode aims for partitions of about this much input, so one partition's records fit comfortably
+    private static final long SPILL_PARTITION_TARGET_BYTES = 32L * 1024 * 1024;
+    private static final int SPILL_MIN_PARTITIONS = 16;
+    private static final int SPILL_MAX_PARTITIONS = 512;
+
+    // Product CSVs from this size are tokenized on several threads, a chunk each
+    private static final long PARALLEL_PARSE_MIN_BYTES = 64L * 1024 * 1024;
+    private static final long PARSE_CHUNK_BYTES = 16L * 1024 * 1024;
+
+    // Contiguous mode validates this many consecutive handle groups at a time
+    private static final int CONTIGUOUS_BATCH_GROUPS = 4096;
+    // Batches waiting between two pipeline stages; the rest of the file stays unread until there is room
+    private static final int PIPELINE_QUEUE_BATCHES = 4;
+    private static final long PIPELINE_POLL_MILLIS = 100;
+    private static final Map<String, List<ProductRow>> END_OF_BATCHES = new LinkedHashMap<>();
+
+    private final ProcessingOptions options;
+    private ForkJoinPool validationPool;
+    private final Set<Thread> validationWorkers = ConcurrentHashMap.newKeySet();
+    // Validations using the pool right now, and ever; together they tell whether one ran alone
+    private final AtomicInteger activePoolValidations = new AtomicInteger();
+    private final AtomicLong poolValidationsStarted = new AtomicLong();
+
+    public CsvProcessor() {
+        this(new ProcessingOptions());
+    }
+
+    public CsvProcessor(ProcessingOptions options) {
+        this.options = options;
+    }
+
+    public ProcessingOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Validates a Shopify product CSV and writes the error and Success sheets to outputFilePath.
+     * Returns the run summary, or null if nothing was written (output locked, headers missing).
+     */
+    public ProcessingResult processCsv(String inputFilePath, String outputFilePath, ProcessingReporter reporter) throws IOException {
+        if (!isFileWritable(outputFilePath)) {
+            reporter.error("The output file '" + outputFilePath + "' is open or locked by another process. Please close it and try again.");
+            return null;
+        }
+
+        RunMetrics metrics = new RunMetrics(new File(inputFilePath).length());
+        metrics.startRun();
+        ProcessingResult result;
+        try {
+            result = processCsv(inputFilePath, outputFilePath, metrics, reporter);
+        } finally {
+            metrics.finishRun();
+        }
+        if (result != null) {
+            reportMetrics(inputFilePath, result, reporter);
+        }
+        return result;
+    }
+
+    private ProcessingResult processCsv(String inputFilePath, String outputFilePath, RunMetrics metrics,
+                                        ProcessingReporter reporter) throws IOException {
+        if (options.isContiguousHandles()) {
+            ProcessingResult result = new ProcessingResult(outputFilePath, metrics);
+            try (MappedCsvReader reader = openProductCsv(inputFilePath)) {
+                if (compileSchema(reader, reporter) == null) {
+                    return null; // Header validation failure, no output written
+                }
+                if (processCsvContiguous(reader, inputFilePath, outputFilePath, result, reporter)) {
+                    return result;
+                }
+            }
+            // A handle came back after other handles, so the groups are only complete once the whole file is read
+            reporter.info("Handles are not contiguous in " + new File(inputFilePath).getName() + ", grouping the whole file");
+            metrics.clearStages(); // the run's wall time still includes the abandoned pass
+        }
+
+        ProcessingResult result = new ProcessingResult(outputFilePath, metrics);
+
+        // Groups in the order their handles first appear, as contiguous mode sees them, so the first row
+        // to claim a SKU is the same whichever mode the file goes through
+        Map<String, List<ProductRow>> handleToRecordsMap = new LinkedHashMap<>();
+        Map<String, List<ProductError>> errors;
+        List<SuccessfulRecord> successfulRecords;
+        long imageRowCount = 0; // image rows are only counted, never kept
+        long rowsRead = 0;
+
+        try (MappedCsvReader reader = openProductCsv(inputFilePath)) {
+            if (compileSchema(reader, reporter) == null) {
+                return null; // Header validation failure, no output written
+            }
+
+            // Catalogs that would not fit on the heap are grouped through partition files instead
+            if (new File(inputFilePath).length() >= options.getSpillThresholdBytes()) {
+                return processCsvSpilled(reader, inputFilePath, outputFilePath, result, reporter);
+            }
+
+            // Read the rows and skip image entries; only the schema columns are kept
+            RunMetrics.Span span = RunMetrics.start();
+            ProductTable table = new ProductTable();
+            String[] values = new String[ProductSchema.COLUMN_COUNT];
+            while (reader.next(values)) {
+                rowsRead++;
+                if (isImageEntry(values)) {
+                    imageRowCount++;
+                    continue;
+                }
+                table.add(values);
+            }
+            result.setRowsRead(rowsRead);
+            result.setImageRowsSkipped(imageRowCount);
+            metrics.record(RunMetrics.PARSE, span, rowsRead, reader.getWorkerAllocatedBytes());
+            checkCancelled(inputFilePath);
+
+            // Group them by handle
+            span = RunMetrics.start();
+            for (int i = 0; i < table.size(); i++) {
+                ProductRow row = table.row(i);
+                handleToRecordsMap.computeIfAbsent(row.get(ProductSchema.HANDLE), k -> new ArrayList<>()).add(row);
+            }
+            metrics.record(RunMetrics.GROUP, span, table.size());
+
+            // Validate each handle group, then apply the run-wide checks in group order
+            span = RunMetrics.start();
+            try (ValidationCollector collector = new ValidationCollector(options.getSkuIndex())) {
+                long poolAllocated = validateHandleGroups(handleToRecordsMap, new HandleGroupValidator(), collector);
+                errors = collector.getErrors();
+                successfulRecords = collector.getSuccessfulRecords();
+                metrics.record(RunMetrics.VALIDATE, span, table.size(), poolAllocated);
+            }
+        }
+
+        checkCancelled(inputFilePath);
+
+        writeOutputWorkbook(outputFilePath, errors, successfulRecords, metrics);
+        if (isRecordingSkus()) {
+            for (SuccessfulRecord successfulRecord : successfulRecords) {
+                options.getSkuIndex().add(successfulRecord.row.get(ProductSchema.VARIANT_SKU));
+            }
+        }
+
+        for (Map.Entry<String, List<ProductError>> entry : errors.entrySet()) {
+            result.setSheetCount(entry.getKey(), entry.getValue().size());
+        }
+        result.setSheetCount(SUCCESS_SHEET, successfulRecords.size());
+        for (SuccessfulRecord successfulRecord : successfulRecords) {
+            result.countMetaStatus(successfulRecord.metaStatus);
+        }
+        return result;
+    }
+
+    // Reports the finished run: where the output went and its metrics as a message, and a JSON run
+    // report next to the output workbook
+    private static void reportMetrics(String inputFilePath, ProcessingResult result, ProcessingReporter reporter) {
+        RunMetrics metrics = result.getMetrics();
+        reporter.info(new File(inputFilePath).getName() + ": skipped " + result.getImageRowsSkipped()
+                + " image entries, output written to " + result.getOutputFilePath() + "\n" + metrics.format());
+        File reportFile = RunMetrics.reportFileFor(result.getOutputFilePath());
+        try {
+            metrics.writeJson(reportFile, inputFilePath, result);
+        } catch (IOException e) {
+            reporter.warning("Could not write the run report " + reportFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    // Product CSVs are tokenized straight from a memory mapping; only the schema columns are ever decoded
+    private static MappedCsvReader openProductCsv(String inputFilePath) throws IOException {
+        return new MappedCsvReader(Paths.get(inputFilePath));
+    }
+
+    // Resolves the required headers (trimmed, case-insensitive) to column indices once and projects
+    // the reader onto them; null if any is missing. Large files are then tokenized in parallel.
+    private ProductSchema compileSchema(MappedCsvReader reader, ProcessingReporter reporter) throws IOException {
+        ProductSchema schema = ProductSchema.compile(reader.getHeaderMap());
+        List<String> missingHeaders = schema.getMissingColumns();
+
+        if (!missingHeaders.isEmpty()) {
+            String errorMessage = "The following required headers are missing from your CSV file: " + missingHeaders +
+                    ". Please update your CSV file headers to include: " + Arrays.toString(REQUIRED_HEADERS);
+            reporter.warning(errorMessage);
+            return null;
+        }
+        reader.project(schema.getSourceIndices());
+        if (options.getParseParallelism() > 1 && reader.getFileSize() >= PARALLEL_PARSE_MIN_BYTES) {
+            reader.parseInParallel(options.getParseParallelism(), PARSE_CHUNK_BYTES);
+        }
+        return schema;
+    }
+
+    /**
+     * Contiguous mode for files whose rows are already ordered by handle, as Shopify exports are.
+     * A handle group is complete as soon as the handle changes, so groups are validated in batches
+     * of consecutive groups and their rows appended to per-sheet spill files right away; only the
+     * batches in flight are held. The count in each sheet's first row is only known at the end, so
+     * the workbook is written from the spills once the whole file is read, as in spill mode.
+     * Returns false, without writing the output, as soon as a handle shows up again after other
+     * handles; the caller then groups the whole file.
+     */
+    private boolean processCsvContiguous(MappedCsvReader reader, String inputFilePath, String outputFilePath,
+                                         ProcessingResult result, ProcessingReporter reporter) throws IOException {
+        File spillDirectory = createSpillDirectory();
+        Map<String, SheetRowSpill> sheetSpills = new LinkedHashMap<>();
+        try {
+            openSheetSpills(spillDirectory, sheetSpills);
+            boolean contiguous = options.isPipelined()
+                    ? runContiguousPipeline(reader, inputFilePath, sheetSpills, result)
+                    : runContiguousInline(reader, inputFilePath, sheetSpills, result);
+            if (!contiguous) {
+                return false; // nothing has been written to the output yet
+            }
+            writeFromSheetSpills(outputFilePath, sheetSpills, result);
+            recordSkus(sheetSpills);
+        } finally {
+            deleteSpills(sheetSpills, spillDirectory, reporter);
+        }
+        return true;
+    }
+
+    // Validates and writes each batch on the parsing thread
+    private boolean runContiguousInline(MappedCsvReader reader, String inputFilePath, Map<String, SheetRowSpill> sheetSpills,
+                                        ProcessingResult result) throws IOException {
+        HandleGroupValidator validator = new HandleGroupValidator();
+        RunMetrics metrics = result.getMetrics();
+        try (ValidationCollector collector = new ValidationCollector(options.getSkuIndex())) {
+            // Stages interleave here; parse is timed in the pieces between batches
+            RunMetrics.Span[] parsing = {RunMetrics.start()};
+
+            boolean contiguous = readContiguousBatches(reader, inputFilePath, result, batch -> {
+                metrics.record(RunMetrics.PARSE, parsing[0], 0);
+                RunMetrics.Span validating = RunMetrics.start();
+                long poolAllocated = validateHandleGroups(batch, validator, collector);
+                metrics.record(RunMetrics.VALIDATE, validating, rowCount(batch), poolAllocated);
+                appendToSheetSpills(collector.getErrors(), collector.getSuccessfulRecords(), sheetSpills, result);
+                collector.clearOutput();
+                parsing[0] = RunMetrics.start();
+            });
+
+            metrics.record(RunMetrics.PARSE, parsing[0], result.getRowsRead(), reader.getWorkerAllocatedBytes());
+            return contiguous;
+        }
+    }
+
+    /**
+     * Runs the three stages on their own threads: this thread parses and cuts batches, a
+     * validation thread feeds them through the collector and a writer thread appends the rows to
+     * the sheet spills. Bounded queues sit between the stages, so a slow writer holds the parser back
+     * instead of letting batches pile up on the heap. Each stage records its busy time, waits for
+     * the next stage left out.
+     */
+    private boolean runContiguousPipeline(MappedCsvReader reader, String inputFilePath, Map<String, SheetRowSpill> sheetSpills,
+                                          ProcessingResult result) throws IOException {
+        BlockingQueue<Map<String, List<ProductRow>>> toValidate = new ArrayBlockingQueue<>(PIPELINE_QUEUE_BATCHES);
+        BlockingQueue<ValidatedBatch> toWrite = new ArrayBlockingQueue<>(PIPELINE_QUEUE_BATCHES);
+        ExecutorService stages = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "csv-pipeline-stage");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        RunMetrics metrics = result.getMetrics();
+        try {
+            // Only the writer stage touches the sheet spills and the result until it is done
+            Future<?> writing = stages.submit(() -> {
+                for (ValidatedBatch batch = toWrite.take(); batch != ValidatedBatch.END; batch = toWrite.take()) {
+                    appendToSheetSpills(batch.errors, batch.successfulRecords, sheetSpills, result);
+                }
+                return null;
+            });
+            Future<?> validating = stages.submit(() -> {
+                HandleGroupValidator validator = new HandleGroupValidator();
+                try (ValidationCollector collector = new ValidationCollector(options.getSkuIndex())) {
+                    for (Map<String, List<ProductRow>> batch = toValidate.take(); batch != END_OF_BATCHES; batch = toValidate.take()) {
+                        RunMetrics.Span span = RunMetrics.start();
+                        long poolAllocated = validateHandleGroups(batch, validator, collector);
+                        ValidatedBatch validated = new ValidatedBatch(collector);
+                        metrics.record(RunMetrics.VALIDATE, span, rowCount(batch), poolAllocated);
+                        handOver(toWrite, validated, writing);
+                    }
+                }
+                handOver(toWrite, ValidatedBatch.END, writing);
+                return null;
+            });
+
+            RunMetrics.Span[] parsing = {RunMetrics.start()};
+            boolean contiguous = readContiguousBatches(reader, inputFilePath, result, batch -> {
+                metrics.record(RunMetrics.PARSE, parsing[0], 0);
+                handOver(toValidate, batch, validating);
+                parsing[0] = RunMetrics.start();
+            });
+            if (!contiguous) {
+                return false;
+            }
+            metrics.record(RunMetrics.PARSE, parsing[0], result.getRowsRead(), reader.getWorkerAllocatedBytes());
+            handOver(toValidate, END_OF_BATCHES, validating);
+
+            awaitStage(validating);
+            awaitStage(writing);
+            return true;
+        } finally {
+            // On failure, cancellation or a non-contiguous file, stop the stages before the workbook is closed
+            stages.shutdownNow();
+            try {
+                stages.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private interface BatchSink {
+        void accept(Map<String, List<ProductRow>> batch) throws IOException;
+    }
+
+    /**
+     * Cuts the rows into batches of consecutive handle groups and passes each full batch, and the
+     * last one, to the sink, which keeps it. Returns false as soon as a handle shows up again
+     * after other handles.
+     */
+    private static boolean readContiguousBatches(MappedCsvReader reader, String inputFilePath,
+                                                 ProcessingResult result, BatchSink sink) throws IOException {
+        long rowsRead = 0;
+        long imageRowCount = 0;
+        CompactStringSet seenHandles = new CompactStringSet();
+        // Consecutive groups in file order; LinkedHashMap so validateHandleGroups keeps that order
+        Map<String, List<ProductRow>> batch = new LinkedHashMap<>();
+        List<ProductRow> currentGroup = null;
+        String currentHandle = null;
+        // Each batch gets its own table, so the next stage can read it while the parser fills the next one
+        ProductTable table = new ProductTable();
+        String[] values = new String[ProductSchema.COLUMN_COUNT];
+
+        while (reader.next(values)) {
+            rowsRead++;
+            if (isImageEntry(values)) {
+                imageRowCount++;
+                continue;
+            }
+            String handle = values[ProductSchema.HANDLE];
+            if (!handle.equals(currentHandle)) {
+                if (!seenHandles.add(handle)) {
+                    return false;
+                }
+                if (batch.size() >= CONTIGUOUS_BATCH_GROUPS) {
+                    sink.accept(batch);
+                    batch = new LinkedHashMap<>();
+                    table = new ProductTable();
+                    checkCancelled(inputFilePath);
+                }
+                currentHandle = handle;
+                currentGroup = new ArrayList<>();
+                batch.put(handle, currentGroup);
+            }
+            currentGroup.add(table.add(values));
+        }
+        sink.accept(batch);
+        checkCancelled(inputFilePath);
+
+        result.setRowsRead(rowsRead);
+        result.setImageRowsSkipped(imageRowCount);
+        return true;
+    }
+
+    // Blocks until the next stage has room for the item, failing instead if that stage has already stopped
+    private static <T> void handOver(BlockingQueue<T> queue, T item, Future<?> consumer) throws IOException {
+        try {
+            while (!queue.offer(item, PIPELINE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (consumer.isDone()) {
+                    awaitStage(consumer); // rethrows the stage's failure
+                    throw new IOException("Pipeline stage stopped before the input was finished");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Processing was interrupted");
+        }
+    }
+
+    // Waits for a stage to finish, rethrowing whatever made it fail
+    private static void awaitStage(Future<?> stage) throws IOException {
+        try {
+            stage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Processing was interrupted");
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Pipeline stage was cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw new InterruptedIOException("Pipeline stage was interrupted");
+            }
+            throw new IOException("Pipeline stage failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static long rowCount(Map<String, List<ProductRow>> groups) {
+        long rows = 0;
+        for (List<ProductRow> group : groups.values()) {
+            rows += group.size();
+        }
+        return rows;
+    }
+
+    /** One batch's output rows, handed from the validation stage to the writer stage. */
+    private static final class ValidatedBatch {
+        static final ValidatedBatch END = new ValidatedBatch(Collections.emptyMap(), Collections.emptyList());
+
+        final Map<String, List<ProductError>> errors;
+        final List<SuccessfulRecord> successfulRecords;
+
+        ValidatedBatch(Map<String, List<ProductError>> errors, List<SuccessfulRecord> successfulRecords) {
+            this.errors = errors;
+            this.successfulRecords = successfulRecords;
+        }
+
+        // Takes the collector's rows so far, leaving it empty for the next batch
+        ValidatedBatch(ValidationCollector collector) {
+            this(new LinkedHashMap<>(), new ArrayList<>(collector.getSuccessfulRecords()));
+            for (Map.Entry<String, List<ProductError>> entry : collector.getErrors().entrySet()) {
+                errors.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+            collector.clearOutput();
+        }
+    }
+
+    /**
+     * Spill mode: rows are hash-partitioned by handle into temporary files, then each partition is
+     * grouped, validated and drained to per-sheet spill files before the next one is read. The heap
+     * holds one partition's records plus the run-wide SKU and handle sets; the workbook is written
+     * from the sheet spills once all counts are known.
+     */
+    private ProcessingResult processCsvSpilled(MappedCsvReader reader, String inputFilePath, String outputFilePath,
+                                               ProcessingResult result, ProcessingReporter reporter) throws IOException {
+        RunMetrics metrics = result.getMetrics();
+        RunMetrics.Span span = RunMetrics.start();
+        File spillDirectory = createSpillDirectory();
+        long fileSize = new File(inputFilePath).length();
+        int partitions = (int) Math.max(SPILL_MIN_PARTITIONS, Math.min(SPILL_MAX_PARTITIONS, fileSize / SPILL_PARTITION_TARGET_BYTES + 1));
+        reporter.info(new File(inputFilePath).getName() + ": spilling to " + partitions + " handle partitions");
+
+        Map<String, SheetRowSpill> sheetSpills = new LinkedHashMap<>(); // sheet order in the output workbook
+        try (HandlePartitionSpill partitionSpill = new HandlePartitionSpill(spillDirectory, partitions)) {
+            long rowsRead = 0;
+            long imageRowCount = 0;
+            String[] values = new String[ProductSchema.COLUMN_COUNT];
+            while (reader.next(values)) {
+                rowsRead++;
+                if (isImageEntry(values)) {
+                    imageRowCount++;
+                    continue;
+                }
+                partitionSpill.add(values[ProductSchema.HANDLE], values);
+            }
+            partitionSpill.finishWriting();
+            result.setRowsRead(rowsRead);
+            result.setImageRowsSkipped(imageRowCount);
+            metrics.record(RunMetrics.PARSE, span, rowsRead, reader.getWorkerAllocatedBytes());
+            checkCancelled(inputFilePath);
+
+            openSheetSpills(spillDirectory, sheetSpills);
+
+            // The collector keeps the run-wide state across partitions; its output is drained after each one
+            HandleGroupValidator validator = new HandleGroupValidator();
+            try (ValidationCollector collector = new ValidationCollector(options.getSkuIndex())) {
+                for (int partition = 0; partition < partitionSpill.getPartitionCount(); partition++) {
+                    if (partitionSpill.getRowCount(partition) == 0) {
+                        continue;
+                    }
+                    Map<String, List<ProductRow>> handleToRecordsMap = new LinkedHashMap<>(); // first-appearance order
+                    try (CSVParser partitionParser = partitionSpill.openPartition(partition)) {
+                        span = RunMetrics.start();
+                        ProductTable table = new ProductTable();
+                        for (CSVRecord record : partitionParser) {
+                            for (int column = 0; column < ProductSchema.COLUMN_COUNT; column++) {
+                                values[column] = record.get(column);
+                            }
+                            ProductRow row = table.add(values);
+                            handleToRecordsMap.computeIfAbsent(row.get(ProductSchema.HANDLE), k -> new ArrayList<>()).add(row);
+                        }
+                        metrics.record(RunMetrics.GROUP, span, table.size());
+
+                        span = RunMetrics.start();
+                        long poolAllocated = validateHandleGroups(handleToRecordsMap, validator, collector);
+                        metrics.record(RunMetrics.VALIDATE, span, table.size(), poolAllocated);
+                        appendToSheetSpills(collector.getErrors(), collector.getSuccessfulRecords(), sheetSpills, result);
+                        collector.clearOutput();
+                    }
+                    partitionSpill.deletePartition(partition);
+                    checkCancelled(inputFilePath);
+                }
+            }
+
+            writeFromSheetSpills(outputFilePath, sheetSpills, result);
+            recordSkus(sheetSpills);
+            return result;
+        } finally {
+            deleteSpills(sheetSpills, spillDirectory, reporter);
+        }
+    }
+
+    // A fresh directory for one run's temporary files, under the configured spill directory
+    private File createSpillDirectory() throws IOException {
+        return Files.createTempDirectory(
+                options.getSpillDirectory() != null ? options.getSpillDirectory().toPath() : Paths.get(System.getProperty("java.io.tmpdir")),
+                "csv-spill-").toFile();
+    }
+
+    // Adds a row spill per output sheet to sheetSpills, in workbook order: the error sheets, then Success
+    private static void openSheetSpills(File spillDirectory, Map<String, SheetRowSpill> sheetSpills) throws IOException {
+        for (String sheetName : new String[]{DUPLICATE_SKUS_SHEET, INVALID_OPTIONS_SHEET, OTHER_ERRORS_SHEET}) {
+            sheetSpills.put(sheetName, new SheetRowSpill(new File(spillDirectory, "sheet-" + sheetSpills.size() + ".csv"), ERROR_HEADERS.length));
+        }
+        sheetSpills.put(SUCCESS_SHEET, new SheetRowSpill(new File(spillDirectory, "sheet-" + sheetSpills.size() + ".csv"), SUCCESS_HEADERS.length));
+    }
+
+    // The directory only goes once every file in it has, so one check covers them all
+    private static void deleteSpills(Map<String, SheetRowSpill> sheetSpills, File spillDirectory, ProcessingReporter reporter) {
+        for (SheetRowSpill spill : sheetSpills.values()) {
+            spill.close();
+        }
+        if (!spillDirectory.delete() && spillDirectory.exists()) {
+            reporter.warning("Could not delete the temporary files in " + spillDirectory);
+        }
+    }
+
+    // Writes the workbook from the sheet spills, each sheet under its final count. Rows are counted
+    // here; the appends to the spills only add their time.
+    private static void writeFromSheetSpills(String outputFilePath, Map<String, SheetRowSpill> sheetSpills,
+                                             ProcessingResult result) throws IOException {
+        RunMetrics metrics = result.getMetrics();
+        try (StreamingWorkbookWriter writer = new StreamingWorkbookWriter(outputFilePath)) {
+            for (Map.Entry<String, SheetRowSpill> entry : sheetSpills.entrySet()) {
+                RunMetrics.Span span = RunMetrics.start();
+                String sheetName = entry.getKey();
+                SheetRowSpill spill = entry.getValue();
+                boolean success = SUCCESS_SHEET.equals(sheetName);
+                String countText = success
+                        ? "Count of Successful Records: " + spill.getRowCount()
+                        : "Count of " + sheetName + ": " + spill.getRowCount();
+                spill.copyTo(writer.createSheet(sheetName, countText, success ? SUCCESS_HEADERS : ERROR_HEADERS));
+                result.setSheetCount(sheetName, spill.getRowCount());
+                metrics.record(success ? RunMetrics.WRITE_SUCCESS : RunMetrics.WRITE_ERRORS, span, spill.getRowCount());
+            }
+            // Saving the workbook counts as writing Success, the last sheet
+            RunMetrics.Span span = RunMetrics.start();
+            writer.finish();
+            metrics.record(RunMetrics.WRITE_SUCCESS, span, 0);
+        }
+    }
+
+    // With --record-skus the Success rows' SKUs join the index, but only once the workbook holding
+    // them is written: a run that fails, is cancelled or starts over records nothing
+    private boolean isRecordingSkus() {
+        return options.isRecordSkus() && options.getSkuIndex() != null;
+    }
+
+    // Reads the SKUs back from the Success spill, whose columns are the schema columns first
+    private void recordSkus(Map<String, SheetRowSpill> sheetSpills) throws IOException {
+        if (isRecordingSkus()) {
+            SkuIndex knownSkus = options.getSkuIndex();
+            sheetSpills.get(SUCCESS_SHEET).forEachRow(values -> knownSkus.add(values[ProductSchema.VARIANT_SKU]));
+        }
+    }
+
+    // Appends finished rows to their sheet spills and counts the Success rows' meta statuses
+    private static void appendToSheetSpills(Map<String, List<ProductError>> errors, List<SuccessfulRecord> successfulRecords,
+                                            Map<String, SheetRowSpill> sheetSpills, ProcessingResult result) throws IOException {
+        RunMetrics.Span span = RunMetrics.start();
+        for (Map.Entry<String, List<ProductError>> entry : errors.entrySet()) {
+            SheetRowSpill spill = sheetSpills.get(entry.getKey());
+            for (ProductError error : entry.getValue()) {
+                spill.append(errorRowValues(error));
+            }
+        }
+        result.getMetrics().record(RunMetrics.WRITE_ERRORS, span, 0);
+
+        span = RunMetrics.start();
+        SheetRowSpill successSpill = sheetSpills.get(SUCCESS_SHEET);
+        String[] values = new String[SUCCESS_HEADERS.length];
+        for (SuccessfulRecord successfulRecord : successfulRecords) {
+            successSpill.append(successRowValues(successfulRecord, values));
+            result.countMetaStatus(successfulRecord.metaStatus);
+        }
+        result.getMetrics().record(RunMetrics.WRITE_SUCCESS, span, 0);
+    }
+
+    static boolean isImageEntry(String[] values) {
+        return values[ProductSchema.OPTION1_NAME].isEmpty() &&
+                values[ProductSchema.OPTION1_VALUE].isEmpty() &&
+                values[ProductSchema.OPTION2_NAME].isEmpty() &&
+                values[ProductSchema.OPTION2_VALUE].isEmpty() &&
+                values[ProductSchema.VARIANT_SKU].isEmpty();
+    }
+
+    // Batch runs cancel by interrupting the worker; stop between stages rather than write a partial workbook
+    private static void checkCancelled(String inputFilePath) throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Processing of " + inputFilePath + " was cancelled");
+        }
+    }
+
+    /**
+     * Runs the per-group rules and feeds the verdicts to the collector in map iteration order.
+     * With more than one validation thread, batches of groups are validated on a fork/join pool
+     * and collected in their original order, so the output matches a sequential run row for row.
+     * Returns the bytes the pool's threads allocated meanwhile: 0 without the pool, -1 if unknown.
+     * The pool is shared by the files this processor runs at once, and its threads' counters can't
+     * tell them apart, so the figure is only given when no other file used the pool meanwhile.
+     */
+    private long validateHandleGroups(Map<String, List<ProductRow>> handleToRecordsMap, HandleGroupValidator validator,
+                                      ValidationCollector collector) throws IOException {
+        int parallelism = options.getValidationParallelism();
+        if (parallelism <= 1 || handleToRecordsMap.size() < PARALLEL_VALIDATION_MIN_GROUPS) {
+            for (Map.Entry<String, List<ProductRow>> entry : handleToRecordsMap.entrySet()) {
+                collector.accept(validator.validate(entry.getKey(), entry.getValue()));
+            }
+            return 0;
+        }
+
+        ForkJoinPool pool = getValidationPool(parallelism);
+        // Counted as started before as active, so two files starting together can't both see themselves alone
+        long started = poolValidationsStarted.incrementAndGet();
+        boolean alone = activePoolValidations.incrementAndGet() == 1;
+        try {
+            long allocatedBefore = validationWorkerAllocatedBytes();
+            validateInBatches(pool, parallelism, handleToRecordsMap, validator, collector);
+            long allocatedAfter = validationWorkerAllocatedBytes();
+            // Another file that started (or was still running) meanwhile left its allocations in the counters too
+            alone &= poolValidationsStarted.get() == started;
+            return !alone || allocatedBefore < 0 || allocatedAfter < 0 ? -1 : Math.max(0, allocatedAfter - allocatedBefore);
+        } finally {
+            activePoolValidations.decrementAndGet();
+        }
+    }
+
+    // Validates the groups on the pool a batch at a time and hands the verdicts to the collector in order
+    private static void validateInBatches(ForkJoinPool pool, int parallelism, Map<String, List<ProductRow>> handleToRecordsMap,
+                                          HandleGroupValidator validator, ValidationCollector collector) throws IOException {
+        List<Map.Entry<String, List<ProductRow>>> groups = new ArrayList<>(handleToRecordsMap.entrySet());
+        int batchSize = parallelism * PARALLEL_VALIDATION_BATCH_PER_THREAD;
+        for (int from = 0; from < groups.size(); from += batchSize) {
+            List<Map.Entry<String, List<ProductRow>>> batch = groups.subList(from, Math.min(from + batchSize, groups.size()));
+            List<HandleGroupValidator.GroupVerdict> verdicts;
+            try {
+                verdicts = pool.submit(() -> batch.parallelStream()
+                        .map(entry -> validator.validate(entry.getKey(), entry.getValue()))
+                        .collect(Collectors.toList())).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Validation was interrupted");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException("Validation failed: " + cause.getMessage(), cause);
+            }
+            for (HandleGroupValidator.GroupVerdict verdict : verdicts) {
+                collector.accept(verdict);
+            }
+        }
+    }
+
+    private synchronized ForkJoinPool getValidationPool(int parallelism) {
+        if (validationPool == null || validationPool.getParallelism() != parallelism) {
+            if (validationPool != null) {
+                validationPool.shutdown();
+            }
+            // Its threads are kept track of for their allocation counters
+            validationPool = new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                validationWorkers.add(worker);
+                return worker;
+            }, null, false);
+        }
+        return validationPool;
+    }
+
+    private long validationWorkerAllocatedBytes() {
+        validationWorkers.removeIf(worker -> !worker.isAlive());
+        return RunMetrics.allocatedBytes(validationWorkers);
+    }
+
+    private static final String[] ERROR_HEADERS = {"Error Log", "Handle", "Title", "Product Category", "Option 1 Name", "Option 1 Value", "Option 2 Name", "Option 2 Value", "Variant SKU", "Meta Status"};
+    private static final String[] SUCCESS_HEADERS = {"Handle", "Title", "Product Category", "Option1 Name", "Option1 Value", "Option2 Name", "Option2 Value", "Variant SKU", "Meta Status"};
+
+    // Writes all four sheets (three error sheets, then "Success") in a single streaming pass;
+    // saving the workbook counts as writing Success, the last sheet
+    private static void writeOutputWorkbook(String outputFilePath, Map<String, List<ProductError>> errors,
+                                            List<SuccessfulRecord> successfulRecords, RunMetrics metrics) throws IOException {
+        try (StreamingWorkbookWriter writer = new StreamingWorkbookWriter(outputFilePath)) {
+            RunMetrics.Span span = RunMetrics.start();
+            writeErrorsToExcel(writer, errors);
+            metrics.record(RunMetrics.WRITE_ERRORS, span, errorRowCount(errors));
+
+            span = RunMetrics.start();
+            writeSuccessfulRecordsToExcel(writer, successfulRecords);
+            writer.finish();
+            metrics.record(RunMetrics.WRITE_SUCCESS, span, successfulRecords.size());
+        }
+    }
+
+    private static long errorRowCount(Map<String, List<ProductError>> errors) {
+        long rows = 0;
+        for (List<ProductError> sheetErrors : errors.values()) {
+            rows += sheetErrors.size();
+        }
+        return rows;
+    }
+
+    static void writeErrorsToExcel(StreamingWorkbookWriter writer, Map<String, List<ProductError>> errors) {
+        for (Map.Entry<String, List<ProductError>> entry : errors.entrySet()) {
+            writeErrorsToSheet(writer, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void writeErrorsToSheet(StreamingWorkbookWriter writer, String sheetName, List<ProductError> productErrors) {
+        StreamingWorkbookWriter.SheetWriter sheet = writer.createSheet(sheetName, "Count of " + sheetName + ": " + productErrors.size(), ERROR_HEADERS);
+        for (ProductError error : productErrors) {
+            sheet.writeRow(errorRowValues(error));
+        }
+    }
+
+    private static String[] errorRowValues(ProductError error) {
+        return new String[]{
+                error.errorLog,
+                error.row.get(ProductSchema.HANDLE),
+                error.title,
+                error.row.get(ProductSchema.PRODUCT_CATEGORY),
+                error.row.get(ProductSchema.OPTION1_NAME),
+                error.row.get(ProductSchema.OPTION1_VALUE),
+                error.row.get(ProductSchema.OPTION2_NAME),
+                error.row.get(ProductSchema.OPTION2_VALUE),
+                error.row.get(ProductSchema.VARIANT_SKU),
+                error.metaStatus != null ? error.metaStatus : ""};
+    }
+
+    static void writeSuccessfulRecordsToExcel(StreamingWorkbookWriter writer, List<SuccessfulRecord> successfulRecords) {
+        StreamingWorkbookWriter.SheetWriter sheet = writer.createSheet(SUCCESS_SHEET, "Count of Successful Records: " + successfulRecords.size(), SUCCESS_HEADERS);
+        String[] values = new String[SUCCESS_HEADERS.length];
+        for (SuccessfulRecord successfulRecord : successfulRecords) {
+            sheet.writeRow(successRowValues(successfulRecord, values));
+        }
+    }
+
+    // Output columns are the schema columns in schema order, followed by Meta Status
+    private static String[] successRowValues(SuccessfulRecord successfulRecord, String[] values) {
+        for (int column = 0; column < ProductSchema.COLUMN_COUNT; column++) {
+            values[column] = successfulRecord.row.get(column);
+        }
+        values[ProductSchema.COLUMN_COUNT] = successfulRecord.metaStatus;
+        return values;
+    }
+
+    private static boolean isFileWritable(String filePath) {
+        File file = new File(filePath);
+        return !file.exists() || (Files.isWritable(Paths.get(filePath)) && !isFileLocked(String.valueOf(file)));
+    }
+
+    private static boolean isFileLocked(String file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+
+
+
+
+    /**
+     * Checks a previously written output workbook for errors. The sheets are streamed with the
+     * SAX event API rather than loaded into an XSSFWorkbook. Right after {@link #processCsv} use
+     * {@link ProcessingResult#hasErrors()} instead, which needs no file access at all.
+     */
+    public boolean hasErrors(File excelFile) throws IOException {
+        return new WorkbookErrorScanner(ERROR_HEADERS, SUCCESS_HEADERS).hasErrors(excelFile);
+    }
+
+
+
+    static class ProductError {
+        final String errorLog;
+        final ProductRow row;
+        final String title; // the row's own title, except for SKU errors, which show the meta product's
+        String metaStatus;
+
+        public ProductError(String errorLog, ProductRow row) {
+            this(errorLog, row, row.get(ProductSchema.TITLE));
+        }
+
+        public ProductError(String errorLog, ProductRow row, String metaTitle) {
+            this.errorLog = errorLog;
+            this.row = row;
+            this.title = metaTitle;
+        }
+    }
+
+    static class SuccessfulRecord {
+        final ProductRow row;
+        String metaStatus;
+
+        public SuccessfulRecord(ProductRow row, String metaStatus) {
+            this.row = row;
+            this.metaStatus = metaStatus;
+        }
+    }
+}
@@ -0,0 +1,604 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless entry point for nightly jobs. Runs without the JavaFX toolkit:
+ * <pre>
+ *   java -cp app.jar com.example.CsvProcessorCli validate [options] &lt;file-or-dir&gt;...
+ *   java -cp app.jar com.example.CsvProcessorCli product-upload [options] &lt;file-or-dir&gt;...
+ *   java -cp app.jar com.example.CsvProcessorCli variation-upload [options] &lt;file-or-dir&gt;...
+ *   java -cp app.jar com.example.CsvProcessorCli sku-index import|add --sku-index &lt;file&gt; &lt;csv&gt;...
+ *   java -cp app.jar com.example.CsvProcessorCli generate products|product-upload|variation-upload [options] &lt;out.csv&gt;
+ * </pre>
+ * Directories are expanded to the *.csv files directly inside them. Exit status: 0 when every file
+ * is clean, 1 when validation errors were found, 2 for bad arguments, 3 when a file could not be
+ * processed at all (unreadable, missing headers, output locked, out of memory) or the run was
+ * interrupted or crashed.
+ */
+public class CsvProcessorCli {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_VALIDATION_ERRORS = 1;
+    static final int EXIT_USAGE = 2;
+    static final int EXIT_FAILURE = 3;
+
+    private static final String USAGE = String.join("\n",
+            "Usage: CsvProcessorCli <command> [options] <file-or-directory>...",
+            "",
+            "Commands:",
+            "  validate           Validate Shopify product CSVs and write <name>_attempt_N.xlsx, with",
+            "                     per-stage timings in <name>_attempt_N.metrics.json",
+            "  product-upload     Check product upload templates and write " + UploadTemplateProcessor.PRODUCT_UPLOAD_OUTPUT,
+            "  variation-upload   Check variation upload templates and write " + UploadTemplateProcessor.VARIATION_UPLOAD_OUTPUT,
+            "  sku-index import   Rebuild the --sku-index file from a database export CSV",
+            "  sku-index add      Add the SKUs of CSVs (e.g. processed uploads) to the --sku-index file",
+            "  generate           Write a synthetic products, product-upload or variation-upload CSV",
+            "",
+            "Options:",
+            "  --out <dir>                 Output directory (default: current directory for validate,",
+            "                              the input file's directory for uploads; with several upload",
+            "                              templates each gets <dir>/<name>/)",
+            "  --jobs <n>                  Files processed at once (default: 1)",
+            "  --validation-threads <n>    Threads validating one file (default: available processors)",
+            "  --parse-threads <n>         validate: threads tokenizing one file, in 16 MB chunks, from",
+            "                              64 MB (default: available processors)",
+            "  --grouped                   validate: always group the whole file by handle, even when its",
+            "                              rows are already ordered by handle",
+            "  --no-pipeline               validate: parse, validate and write on one thread instead of three",
+            "  --spill                     validate: group handles through temp partition files instead of",
+            "                              in memory (automatic from 256 MB)",
+            "  --spill-dir <dir>           Directory for spill files (default: java.io.tmpdir)",
+            "  --two-pass                  product-upload: always read the file twice instead of holding it",
+            "                              in memory (automatic from 256 MB)",
+            "  --sku-index <file>          Persistent SKU index: SKUs and product codes already in it are",
+            "                              reported as errors (created if missing)",
+            "  --record-skus               With --sku-index: add the SKUs of valid rows to the index, file",
+            "                              by file, so later files are checked against earlier ones",
+            "                              (not with --jobs above 1)",
+            "  --column <name>             sku-index: column holding the SKUs (default: productcode,",
+            "                              product_code, sku or Variant SKU, else the first column)",
+            "  --rows <n>                  generate: variant rows (default: 10000)",
+            "  --handles <n>               generate: distinct handles / variation_name groups (default: rows / 4)",
+            "  --duplicate-sku-rate <r>    generate: share of rows repeating an earlier SKU (default: 0.01)",
+            "  --invalid-option-rate <r>   generate: share of handles with broken option names (default: 0.01)",
+            "  --image-ratio <r>           generate: share of variant rows followed by an image row (default: 0.25)",
+            "  --body-bytes <n>            generate: size of each Body (HTML) (default: 512)",
+            "  --seed <n>                  generate: random seed; the same seed gives the same file (default: 1)",
+            "  --quiet                     Only print errors and the summary",
+            "");
+
+    public static void main(String[] args) {
+        int status;
+        try {
+            status = run(args, System.out, System.err);
+        } catch (Throwable e) {
+            // Left uncaught, the JVM would exit with 1, which reads as "validation errors found"
+            e.printStackTrace();
+            status = EXIT_FAILURE;
+        }
+        System.exit(status);
+    }
+
+    /** Runs one command and returns the exit status instead of exiting, so callers can embed it. */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        if (args.length == 0 || "--help".equals(args[0]) || "-h".equals(args[0])) {
+            out.print(USAGE);
+            return args.length == 0 ? EXIT_USAGE : EXIT_OK;
+        }
+
+        String command = args[0];
+        if (!"validate".equals(command) && !"product-upload".equals(command) && !"variation-upload".equals(command)
+                && !"sku-index".equals(command) && !"generate".equals(command)) {
+            err.println("Unknown command: " + command);
+            err.print(USAGE);
+            return EXIT_USAGE;
+        }
+
+        File outputDir = null;
+        int jobs = 1;
+        ProcessingOptions options = new ProcessingOptions();
+        boolean quiet = false;
+        File skuIndexFile = null;
+        String skuColumn = null;
+        SyntheticCatalogGenerator generator = new SyntheticCatalogGenerator();
+        List<String> paths = new ArrayList<>();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if ("--out".equals(arg)) {
+                    outputDir = new File(requireValue(args, ++i, arg));
+                } else if ("--jobs".equals(arg)) {
+                    jobs = parsePositive(requireValue(args, ++i, arg), arg);
+                } else if ("--validation-threads".equals(arg)) {
+                    options.setValidationParallelism(parsePositive(requireValue(args, ++i, arg), arg));
+                } else if ("--parse-threads".equals(arg)) {
+                    options.setParseParallelism(parsePositive(requireValue(args, ++i, arg), arg));
+                } else if ("--grouped".equals(arg)) {
+                    options.setContiguousHandles(false);
+                } else if ("--no-pipeline".equals(arg)) {
+                    options.setPipelined(false);
+                } else if ("--spill".equals(arg)) {
+                    options.setSpillThresholdBytes(0);
+                } else if ("--spill-dir".equals(arg)) {
+                    options.setSpillDirectory(new File(requireValue(args, ++i, arg)));
+                } else if ("--two-pass".equals(arg)) {
+                    options.setTwoPassUploadThresholdBytes(0);
+                } else if ("--sku-index".equals(arg)) {
+                    skuIndexFile = new File(requireValue(args, ++i, arg));
+                } else if ("--record-skus".equals(arg)) {
+                    options.setRecordSkus(true);
+                } else if ("--column".equals(arg)) {
+                    skuColumn = requireValue(args, ++i, arg);
+                } else if ("--rows".equals(arg)) {
+                    generator.setRows(parseCount(requireValue(args, ++i, arg), arg));
+                } else if ("--handles".equals(arg)) {
+                    generator.setHandles(parsePositive(requireValue(args, ++i, arg), arg));
+                } else if ("--duplicate-sku-rate".equals(arg)) {
+                    generator.setDuplicateSkuRate(parseRate(requireValue(args, ++i, arg), arg));
+                } else if ("--invalid-option-rate".equals(arg)) {
+                    generator.setInvalidOptionRate(parseRate(requireValue(args, ++i, arg), arg));
+                } else if ("--image-ratio".equals(arg)) {
+                    generator.setImageRowRatio(parseRate(requireValue(args, ++i, arg), arg));
+                } else if ("--body-bytes".equals(arg)) {
+                    generator.setBodyBytes(parseCount(requireValue(args, ++i, arg), arg));
+                } else if ("--seed".equals(arg)) {
+                    generator.setSeed(parseSeed(requireValue(args, ++i, arg), arg));
+                } else if ("--quiet".equals(arg)) {
+                    quiet = true;
+                } else if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                } else {
+                    paths.add(arg);
+                }
+            }
+            if ("sku-index".equals(command) && (paths.isEmpty() || skuIndexFile == null)) {
+                throw new IllegalArgumentException("sku-index needs import or add and --sku-index <file>");
+            }
+            if ("generate".equals(command) && paths.size() != 2) {
+                throw new IllegalArgumentException("generate needs products, product-upload or variation-upload and an output file");
+            }
+            if (options.isRecordSkus() && skuIndexFile == null) {
+                throw new IllegalArgumentException("--record-skus needs --sku-index <file>");
+            }
+            // Concurrent files would record into the index while others read it, so whether a file's SKUs
+            // were flagged as already known would depend on which file happened to finish first
+            if (options.isRecordSkus() && jobs > 1) {
+                throw new IllegalArgumentException("--record-skus cannot be combined with --jobs above 1");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.print(USAGE);
+            return EXIT_USAGE;
+        }
+
+        if ("sku-index".equals(command)) {
+            return updateSkuIndex(skuIndexFile, paths.get(0), paths.subList(1, paths.size()), skuColumn, out, err);
+        }
+        if ("generate".equals(command)) {
+            return generate(generator, paths.get(0), new File(paths.get(1)), out, err);
+        }
+
+        List<File> inputFiles;
+        try {
+            inputFiles = expandInputs(paths);
+        } catch (IOException e) {
+            err.println(e.getMessage());
+            return EXIT_USAGE;
+        }
+        if (inputFiles.isEmpty()) {
+            err.println("No CSV files to process.");
+            return EXIT_USAGE;
+        }
+        if (outputDir != null && !outputDir.isDirectory() && !outputDir.mkdirs()) {
+            err.println("Cannot create output directory: " + outputDir);
+            return EXIT_FAILURE;
+        }
+
+        SkuIndex skuIndex = null;
+        if (skuIndexFile != null) {
+            try {
+                skuIndex = SkuIndex.open(skuIndexFile);
+            } catch (IOException e) {
+                err.println(e.getMessage());
+                return EXIT_FAILURE;
+            }
+            options.setSkuIndex(skuIndex);
+        }
+
+        ConsoleReporter reporter = new ConsoleReporter(out, err, quiet);
+        // Upload outputs have fixed names, so several templates sharing --out each get a subdirectory
+        boolean uploadSubdirs = !"validate".equals(command) && outputDir != null && inputFiles.size() > 1;
+        CliRun cliRun = new CliRun(command, outputDir, uploadSubdirs, options, reporter);
+        long started = System.nanoTime();
+        List<FileOutcome> outcomes;
+        try {
+            outcomes = cliRun.processAll(inputFiles, jobs);
+        } finally {
+            closeSkuIndex(skuIndex, err);
+        }
+        long elapsedNanos = System.nanoTime() - started;
+
+        printSummary(out, outcomes, elapsedNanos);
+        if (outcomes.size() < inputFiles.size()) {
+            err.println("Interrupted: " + (inputFiles.size() - outcomes.size()) + " file(s) not processed");
+            return EXIT_FAILURE;
+        }
+
+        int status = EXIT_OK;
+        for (FileOutcome outcome : outcomes) {
+            if (outcome.failed) {
+                status = EXIT_FAILURE;
+            } else if (outcome.hasErrors && status == EXIT_OK) {
+                status = EXIT_VALIDATION_ERRORS;
+            }
+        }
+        return status;
+    }
+
+    // sku-index import <export.csv> | add <csv>...
+    private static int updateSkuIndex(File indexFile, String action, List<String> csvPaths, String column,
+                                      PrintStream out, PrintStream err) {
+        if (!"import".equals(action) && !"add".equals(action)) {
+            err.println("Unknown sku-index action: " + action);
+            err.print(USAGE);
+            return EXIT_USAGE;
+        }
+        if (csvPaths.isEmpty() || "import".equals(action) && csvPaths.size() > 1) {
+            err.println("sku-index " + action + " needs " + ("import".equals(action) ? "one export CSV" : "at least one CSV"));
+            return EXIT_USAGE;
+        }
+        SkuIndex index;
+        try {
+            index = SkuIndex.open(indexFile);
+        } catch (IOException e) {
+            err.println(e.getMessage());
+            return EXIT_FAILURE;
+        }
+        try {
+            if ("import".equals(action)) {
+                index.rebuildFrom(new File(csvPaths.get(0)), column);
+            } else {
+                for (String path : csvPaths) {
+                    long added = index.addFromCsv(new File(path), column);
+                    out.println("Added " + added + " new SKU(s) from " + path);
+                }
+            }
+            out.println(index.size() + " SKU(s) in " + indexFile.getPath());
+            return EXIT_OK;
+        } catch (IOException e) {
+            err.println(e.getMessage());
+            return EXIT_FAILURE;
+        } finally {
+            closeSkuIndex(index, err);
+        }
+    }
+
+    // generate products|product-upload|variation-upload <out.csv>
+    private static int generate(SyntheticCatalogGenerator generator, String kind, File outFile, PrintStream out, PrintStream err) {
+        if (!"products".equals(kind) && !"product-upload".equals(kind) && !"variation-upload".equals(kind)) {
+            err.println("Unknown generate kind: " + kind);
+            err.print(USAGE);
+            return EXIT_USAGE;
+        }
+        try {
+            long records;
+            if ("products".equals(kind)) {
+                records = generator.writeProductCsv(outFile);
+            } else if ("product-upload".equals(kind)) {
+                records = generator.writeProductUploadCsv(outFile);
+            } else {
+                records = generator.writeVariationUploadCsv(outFile);
+            }
+            out.println("Wrote " + records + " record(s) to " + outFile.getPath() + " (" + outFile.length() + " bytes)");
+            return EXIT_OK;
+        } catch (IOException e) {
+            err.println("Cannot write " + outFile + ": " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    private static void closeSkuIndex(SkuIndex index, PrintStream err) {
+        if (index == null) {
+            return;
+        }
+        try {
+            index.close();
+        } catch (IOException e) {
+            err.println("Cannot save the SKU index " + index.getFile() + ": " + e.getMessage());
+        }
+    }
+
+    private static String requireValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static int parsePositive(String value, String option) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 1) {
+                throw new IllegalArgumentException(option + " must be at least 1: " + value);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number: " + value);
+        }
+    }
+
+    private static int parseCount(String value, String option) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0) {
+                throw new IllegalArgumentException(option + " cannot be negative: " + value);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number: " + value);
+        }
+    }
+
+    private static double parseRate(String value, String option) {
+        try {
+            double parsed = Double.parseDouble(value);
+            if (!(parsed >= 0 && parsed <= 1)) {
+                throw new IllegalArgumentException(option + " must be between 0 and 1: " + value);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number: " + value);
+        }
+    }
+
+    private static long parseSeed(String value, String option) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number: " + value);
+        }
+    }
+
+    // Files are taken as given; directories contribute the *.csv files directly inside them, sorted by name
+    private static List<File> expandInputs(List<String> paths) throws IOException {
+        List<File> files = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            if (file.isDirectory()) {
+                File[] csvFiles = file.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".csv"));
+                if (csvFiles != null) {
+                    Arrays.sort(csvFiles);
+                    files.addAll(Arrays.asList(csvFiles));
+                }
+            } else if (file.isFile()) {
+                files.add(file);
+            } else {
+                throw new IOException("No such file or directory: " + path);
+            }
+        }
+        return files;
+    }
+
+    private static void printSummary(PrintStream out, List<FileOutcome> outcomes, long elapsedNanos) {
+        long totalRows = 0;
+        long totalBytes = 0;
+        int withErrors = 0;
+        int failed = 0;
+        for (FileOutcome outcome : outcomes) {
+            totalRows += outcome.rows;
+            totalBytes += outcome.bytes;
+            if (outcome.failed) {
+                failed++;
+            } else if (outcome.hasErrors) {
+                withErrors++;
+            }
+        }
+        double seconds = Math.max(elapsedNanos, 1) / 1_000_000_000.0;
+        out.println(String.format(Locale.ROOT,
+                "Processed %d file(s): %d clean, %d with errors, %d failed", outcomes.size(),
+                outcomes.size() - withErrors - failed, withErrors, failed));
+        out.println(String.format(Locale.ROOT,
+                "Total: %d rows, %.1f MB in %.2f s (%.0f rows/s, %.1f MB/s)", totalRows, totalBytes / 1048576.0,
+                seconds, totalRows / seconds, totalBytes / 1048576.0 / seconds));
+    }
+
+    /** One command over a list of files; files are independent, so they can run on a pool. */
+    private static class CliRun {
+        private final String command;
+        private final File outputDir;
+        private final boolean uploadSubdirs;
+        private final CsvProcessor csvProcessor;
+        private final UploadTemplateProcessor uploadTemplateProcessor;
+        private final ConsoleReporter reporter;
+        private final Set<File> reservedOutputFiles = new HashSet<>(); // guarded by nextAttemptFile
+
+        CliRun(String command, File outputDir, boolean uploadSubdirs, ProcessingOptions options, ConsoleReporter reporter) {
+            this.command = command;
+            this.outputDir = outputDir;
+            this.uploadSubdirs = uploadSubdirs;
+            this.csvProcessor = new CsvProcessor(options);
+            this.uploadTemplateProcessor = new UploadTemplateProcessor(options);
+            this.reporter = reporter;
+        }
+
+        List<FileOutcome> processAll(List<File> inputFiles, int jobs) {
+            List<FileOutcome> outcomes = new ArrayList<>();
+            if (jobs <= 1 || inputFiles.size() == 1) {
+                for (File inputFile : inputFiles) {
+                    outcomes.add(processFile(inputFile));
+                }
+                return outcomes;
+            }
+
+            ExecutorService filePool = Executors.newFixedThreadPool(Math.min(jobs, inputFiles.size()));
+            try {
+                List<Future<FileOutcome>> futures = new ArrayList<>();
+                for (File inputFile : inputFiles) {
+                    futures.add(filePool.submit(() -> processFile(inputFile)));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        outcomes.add(futures.get(i).get());
+                    } catch (ExecutionException e) {
+                        // processFile catches its own failures, so only its reporting can end up here
+                        outcomes.add(crashed(inputFiles.get(i), e.getCause()));
+                    }
+                }
+            } catch (InterruptedException e) {
+                // The outcomes stop short of the input files, which the caller reports as a failed run
+                Thread.currentThread().interrupt();
+            } finally {
+                filePool.shutdownNow();
+            }
+            return outcomes;
+        }
+
+        private FileOutcome processFile(File inputFile) {
+            FileOutcome outcome = new FileOutcome(inputFile);
+            long started = System.nanoTime();
+            try {
+                if ("validate".equals(command)) {
+                    validate(inputFile, outcome);
+                } else {
+                    upload(inputFile, outcome);
+                }
+            } catch (IOException | RuntimeException e) {
+                reporter.error(inputFile.getName() + ": " + e.getMessage());
+                outcome.failed = true;
+            } catch (Throwable e) {
+                // An Error (out of memory, a missing class) fails this file only; the rest of the batch carries on
+                reporter.error(inputFile.getName() + ": " + e);
+                outcome.failed = true;
+            }
+            outcome.millis = (System.nanoTime() - started) / 1_000_000;
+            reporter.fileDone(outcome);
+            return outcome;
+        }
+
+        private FileOutcome crashed(File inputFile, Throwable cause) {
+            reporter.error(inputFile.getName() + ": " + cause);
+            FileOutcome outcome = new FileOutcome(inputFile);
+            outcome.failed = true;
+            return outcome;
+        }
+
+        private void validate(File inputFile, FileOutcome outcome) throws IOException {
+            File outputFile = nextAttemptFile(inputFile);
+            ProcessingResult result = csvProcessor.processCsv(inputFile.getAbsolutePath(), outputFile.getPath(), reporter);
+            if (result == null) {
+                outcome.failed = true;
+                return;
+            }
+            outcome.rows = result.getRowsRead();
+            outcome.errorCount = result.getErrorCount();
+            outcome.hasErrors = result.hasErrors();
+            outcome.outputFile = outputFile;
+        }
+
+        private void upload(File inputFile, FileOutcome outcome) throws IOException {
+            File targetDir = outputDir != null ? outputDir : inputFile.getAbsoluteFile().getParentFile();
+            if (uploadSubdirs) {
+                targetDir = new File(outputDir, inputFile.getName().replaceFirst("[.][^.]+$", ""));
+                if (!targetDir.isDirectory() && !targetDir.mkdirs()) {
+                    throw new IOException("Cannot create output directory: " + targetDir);
+                }
+            }
+            UploadTemplateProcessor.UploadResult result = "product-upload".equals(command)
+                    ? uploadTemplateProcessor.processProductUpload(inputFile, targetDir, reporter)
+                    : uploadTemplateProcessor.processVariationUpload(inputFile, targetDir, reporter);
+            if (result.isHeadersMissing()) {
+                outcome.failed = true;
+                return;
+            }
+            outcome.rows = result.getRowsRead();
+            outcome.errorCount = result.getInvalidRows();
+            outcome.hasErrors = result.hasErrors();
+            outcome.outputFile = result.getProcessedFile();
+        }
+
+        // Same naming as the app (<name>_attempt_N.xlsx), numbered past whatever is already on disk.
+        // Names handed out are remembered rather than created, so a concurrent job for a same-named
+        // file picks the next one and a file that fails leaves nothing behind.
+        private synchronized File nextAttemptFile(File inputFile) {
+            String baseName = inputFile.getName().replaceFirst("[.][^.]+$", "");
+            File dir = outputDir != null ? outputDir : new File(".");
+            int attempt = 1;
+            File candidate;
+            do {
+                candidate = new File(dir, baseName + "_attempt_" + attempt++ + ".xlsx");
+            } while (candidate.exists() || !reservedOutputFiles.add(candidate.getAbsoluteFile()));
+            return candidate;
+        }
+    }
+
+    private static class FileOutcome {
+        final File inputFile;
+        final long bytes;
+        long rows;
+        long errorCount;
+        long millis;
+        boolean hasErrors;
+        boolean failed;
+        File outputFile;
+
+        FileOutcome(File inputFile) {
+            this.inputFile = inputFile;
+            this.bytes = inputFile.length();
+        }
+    }
+
+    /** Prints messages with a level prefix; errors and warnings go to stderr. */
+    private static class ConsoleReporter implements ProcessingReporter {
+        private final PrintStream out;
+        private final PrintStream err;
+        private final boolean quiet;
+
+        ConsoleReporter(PrintStream out, PrintStream err, boolean quiet) {
+            this.out = out;
+            this.err = err;
+            this.quiet = quiet;
+        }
+
+        @Override
+        public void info(String message) {
+            if (!quiet) {
+                out.println("INFO  " + message);
+            }
+        }
+
+        @Override
+        public void warning(String message) {
+            err.println("WARN  " + message);
+        }
+
+        @Override
+        public void error(String message) {
+            err.println("ERROR " + message);
+        }
+
+        void fileDone(FileOutcome outcome) {
+            String status = outcome.failed ? "FAILED" : outcome.hasErrors ? "ERRORS" : "OK";
+            double seconds = Math.max(outcome.millis, 1) / 1000.0;
+            String line = String.format(Locale.ROOT, "%-6s %s: %d rows, %d error rows in %d ms (%.0f rows/s, %.1f MB/s)%s",
+                    status, outcome.inputFile.getName(), outcome.rows, outcome.errorCount, outcome.millis,
+                    outcome.rows / seconds, outcome.bytes / 1048576.0 / seconds,
+                    outcome.outputFile != null ? " -> " + outcome.outputFile.getPath() : "");
+            synchronized (out) {
+                out.println(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example;
+
+/**
+ * Open-addressing map from 64-bit key fingerprints to the first group index that used the key.
+ * Lets the two-pass product upload detect keys shared between groups without keeping the key
+ * strings: a slot is 12 bytes however long the key is. Two different keys only collide if their
+ * 64-bit fingerprints match (about 1 in 10^7 for ten million keys); such a collision would flag both
+ * groups as duplicates. Not thread-safe.
+ */
+final class FingerprintIndex {
+
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final long EMPTY = 0L;
+
+    private long[] fingerprints;
+    private int[] groups;
+    private int size;
+    private int threshold;
+
+    FingerprintIndex() {
+        allocate(1024);
+    }
+
+    /**
+     * Records group for the key's fingerprint unless it is already present. Returns the group
+     * stored earlier, or -1 if the fingerprint is new.
+     */
+    int putIfAbsent(long fingerprint, int group) {
+        long key = fingerprint == EMPTY ? 1L : fingerprint; // 0 marks an empty slot
+        int mask = fingerprints.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (fingerprints[slot] != EMPTY) {
+            if (fingerprints[slot] == key) {
+                return groups[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        fingerprints[slot] = key;
+        groups[slot] = group;
+        if (++size > threshold) {
+            resize();
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** 64-bit FNV-1a over the UTF-16 chars, finished with a murmur3-style mix. */
+    static long fingerprint(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private void resize() {
+        long[] oldFingerprints = fingerprints;
+        int[] oldGroups = groups;
+        allocate(oldFingerprints.length << 1);
+        int mask = fingerprints.length - 1;
+        for (int i = 0; i < oldFingerprints.length; i++) {
+            long key = oldFingerprints[i];
+            if (key != EMPTY) {
+                int slot = (int) (key ^ (key >>> 32)) & mask;
+                while (fingerprints[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                fingerprints[slot] = key;
+                groups[slot] = oldGroups[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        fingerprints = new long[capacity];
+        groups = new int[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+}
@@ -0,0 +1,244 @@
+package com.example;
+
+import com.example.CsvProcessor.ProductError;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.OptionDictionary.COLOR;
+import static com.example.OptionDictionary.COLOUR;
+import static com.example.OptionDictionary.DEFAULT_TITLE;
+import static com.example.OptionDictionary.EMPTY;
+import static com.example.OptionDictionary.TITLE;
+import static com.example.OptionDictionary.isValidOptionType;
+
+/**
+ * The product rules for one handle group. Everything that only depends on the group's own records
+ * is decided here; the checks that need run-wide state (global SKU uniqueness, meta handle
+ * uniqueness) are left to {@link ValidationCollector}, which applies the verdicts in group order.
+ * The validator keeps no state of its own, so groups can be validated on any thread. Option names
+ * and values are compared through their case-folded {@link OptionDictionary} ids, so the rules
+ * allocate nothing per row.
+ */
+class HandleGroupValidator {
+
+    GroupVerdict validate(String handle, List<ProductRow> records) {
+        GroupVerdict verdict = new GroupVerdict(handle);
+
+        // Identify "Title/Default Title" Meta Products
+        List<ProductRow> titleDefaultMetaProducts = new ArrayList<>();
+        List<ProductRow> metaRecords = new ArrayList<>();
+        for (ProductRow r : records) {
+            if (r.foldedId(ProductSchema.OPTION1_NAME) == TITLE &&
+                    r.foldedId(ProductSchema.OPTION1_VALUE) == DEFAULT_TITLE) {
+                titleDefaultMetaProducts.add(r);
+            }
+            // Meta product candidates are the records with a title
+            if (!r.get(ProductSchema.TITLE).isEmpty()) {
+                metaRecords.add(r);
+            }
+        }
+
+        // Enforce Single "Title/Default Title" Meta Product per Handle
+        if (titleDefaultMetaProducts.size() > 1) {
+            for (ProductRow metaRecord : titleDefaultMetaProducts) {
+                verdict.rejectedGroupErrors.add(new ProductError(
+                        "Only one meta product with Option1 Name 'Title' and Option1 Value 'Default Title' is allowed per handle.", metaRecord));
+            }
+            return verdict; // Skip further processing for this handle
+        }
+
+        // Enforce Single "Valid Title" Meta Product per Handle
+        if (metaRecords.size() > 1) {
+            for (ProductRow metaRecord : metaRecords) {
+                verdict.rejectedGroupErrors.add(new ProductError(
+                        "Valid title option must have only one record: " + metaRecords.size() + " found.", metaRecord));
+            }
+            return verdict;
+        }
+
+        // A valid "Title/Default Title" or "Valid Title" meta product makes the handle subject to the uniqueness check
+        verdict.uniqueHandleRecords = titleDefaultMetaProducts.isEmpty() ? metaRecords : titleDefaultMetaProducts;
+
+        ProductRow metaRecord = metaRecords.isEmpty() ? null : metaRecords.get(0);
+        verdict.hasMetaRecord = metaRecord != null;
+        String metaTitle = metaRecord != null ? metaRecord.get(ProductSchema.TITLE) : "";
+        boolean hasOptionErrors = false; // Track option errors
+
+        // Check for suspected meta products (missing title)
+        for (ProductRow record : records) {
+            String title = record.get(ProductSchema.TITLE);
+            String option1Name = record.get(ProductSchema.OPTION1_NAME);
+            String option1Value = record.get(ProductSchema.OPTION1_VALUE);
+            String option2Name = record.get(ProductSchema.OPTION2_NAME);
+            String option2Value = record.get(ProductSchema.OPTION2_VALUE);
+            String sku = record.get(ProductSchema.VARIANT_SKU);
+            if (title.isEmpty() && !option1Name.isEmpty() && !option1Value.isEmpty() &&
+                    !option2Name.isEmpty() && !option2Value.isEmpty() && !sku.isEmpty()) {
+                verdict.suspectedMetaErrors.add(new ProductError(
+                        "This record is suspected as a meta product with missing 'Title' value.", record));
+            }
+        }
+
+        // Process each record under this handle
+        for (ProductRow record : records) {
+            String title = record.get(ProductSchema.TITLE);
+            String sku = record.get(ProductSchema.VARIANT_SKU);
+            String option1Name = record.get(ProductSchema.OPTION1_NAME);
+            String option1Value = record.get(ProductSchema.OPTION1_VALUE);
+            String option2Name = record.get(ProductSchema.OPTION2_NAME);
+            String option2Value = record.get(ProductSchema.OPTION2_VALUE);
+            int option1NameId = record.foldedId(ProductSchema.OPTION1_NAME);
+            int option1ValueId = record.foldedId(ProductSchema.OPTION1_VALUE);
+            int option2NameId = record.foldedId(ProductSchema.OPTION2_NAME);
+            RecordVerdict rv = new RecordVerdict(record, sku, metaTitle);
+
+            // Validate option names for variants
+            if (record != metaRecord) {
+                if (!option1Name.isEmpty() || !option2Name.isEmpty()) {
+                    rv.variantOptionNamesError = new ProductError(
+                            "Variants cannot define their own option names.", record);
+                }
+            }
+
+            // Validate SKU; duplicates are decided by the collector, which owns the run-wide SKU set
+            if (sku.isEmpty()) {
+                rv.missingSkuError = new ProductError("Missing SKU", record, metaTitle);
+            }
+
+            if (record == metaRecord) { //Meta Product Validations
+                if (title.isEmpty()) {
+                    rv.addError(CsvProcessor.OTHER_ERRORS_SHEET, new ProductError("Meta product must have a title", record));
+                    rv.untitledMeta = true;
+                }
+
+                // Meta product cannot have both Option1 Name and Option2 Name empty.
+                if (option1Name.isEmpty() && option2Name.isEmpty()) {
+                    rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Meta product cannot have both Option1 Name and Option2 Name empty", record));
+                    hasOptionErrors = true;
+                }
+
+                if (option1NameId != EMPTY && !isValidOptionType(option1NameId)) {
+                    rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Invalid Option1 Name: " + option1Name, record));
+                    hasOptionErrors = true;
+                }
+
+                if (option2NameId == TITLE) {
+                    rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Option2 Name cannot be 'title'", record));
+                    hasOptionErrors = true;
+                }
+
+                if (option2NameId != EMPTY && !isValidOptionType(option2NameId)) {
+                    rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Invalid Option2 Name: " + option2Name, record));
+                    hasOptionErrors = true;
+                }
+
+                if (option1NameId != EMPTY && option1NameId == option2NameId) {
+                    rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Option1 Name and Option2 Name cannot be the same", record));
+                    hasOptionErrors = true;
+                }
+
+                // New Validation: Color vs. Colour
+                if (option1NameId == COLOR && option2NameId == COLOUR ||
+                        option1NameId == COLOUR && option2NameId == COLOR) {
+                    rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Option names cannot be 'color' and 'colour' simultaneously.  They should be identical.", record));
+                    hasOptionErrors = true;
+                }
+                if (!option1Name.isEmpty() && option1Value.isEmpty()) {
+                    rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Option1 Value cannot be empty when Option1 Name is present", record));
+                    hasOptionErrors = true;
+                }
+                if (!option2Name.isEmpty() && option2Value.isEmpty()) {
+                    rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Option2 Value cannot be empty when Option2 Name is present", record));
+                    hasOptionErrors = true;
+                }
+            } else { //Variant Product Validations
+                if (!title.isEmpty()) {
+                    rv.addError(CsvProcessor.OTHER_ERRORS_SHEET, new ProductError("Variants cannot have a title", record));
+                }
+
+                // Check if the variant has values for meta product options
+                if (metaRecord != null) {
+                    String metaOption1Name = metaRecord.get(ProductSchema.OPTION1_NAME);
+                    String metaOption2Name = metaRecord.get(ProductSchema.OPTION2_NAME);
+
+                    if (!metaOption1Name.isEmpty() && option1Value.isEmpty()) {
+                        rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Missing value for inherited option: " + metaOption1Name, record));
+                        hasOptionErrors = true;
+                    }
+                    if (!metaOption2Name.isEmpty() && option2Value.isEmpty()) {
+                        rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Missing value for inherited option: " + metaOption2Name, record));
+                        hasOptionErrors = true;
+                    }
+                }
+            }
+
+            // Custom Validations
+            if (option1NameId == TITLE) {
+                if (option1ValueId != DEFAULT_TITLE) {
+                    rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Option1 Value must be 'Default Title' when Option1 Name is 'title'", record));
+                    hasOptionErrors = true;
+                }
+                if (!option2Name.isEmpty()) {
+                    rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Option2 Name must be empty when Option1 Name is 'title'", record));
+                    hasOptionErrors = true;
+                }
+
+                // Check for variants (more than one record for the handle)
+                if (records.size() > 1) {
+                    rv.addError(CsvProcessor.INVALID_OPTIONS_SHEET, new ProductError("Variants are not allowed when Option1 Name is 'title'", record));
+                    hasOptionErrors = true;
+                }
+            }
+
+            // Option errors accumulate over the group, so later records see the earlier ones
+            rv.hasOptionErrors = hasOptionErrors;
+            verdict.records.add(rv);
+        }
+        return verdict;
+    }
+
+    /** Outcome of one handle group, before the run-wide checks are applied. */
+    static class GroupVerdict {
+        final String handle;
+        // Set when the group breaks a single-meta-product rule; nothing else applies then
+        final List<ProductError> rejectedGroupErrors = new ArrayList<>();
+        // Meta records to flag if the handle turns out not to be unique (empty: no meta product)
+        List<ProductRow> uniqueHandleRecords = new ArrayList<>();
+        boolean hasMetaRecord;
+        final List<ProductError> suspectedMetaErrors = new ArrayList<>();
+        final List<RecordVerdict> records = new ArrayList<>();
+
+        GroupVerdict(String handle) {
+            this.handle = handle;
+        }
+
+        boolean isRejected() {
+            return !rejectedGroupErrors.isEmpty();
+        }
+    }
+
+    /** Errors found for one record, in the order the rules raised them. */
+    static class RecordVerdict {
+        final ProductRow record;
+        final String sku;
+        final String metaTitle;
+        ProductError variantOptionNamesError;
+        ProductError missingSkuError;
+        final List<String> errorSheets = new ArrayList<>(2);
+        final List<ProductError> errors = new ArrayList<>(2);
+        boolean untitledMeta;
+        boolean hasOptionErrors;
+
+        RecordVerdict(ProductRow record, String sku, String metaTitle) {
+            this.record = record;
+            this.sku = sku;
+            this.metaTitle = metaTitle;
+        }
+
+        void addError(String sheetName, ProductError error) {
+            errorSheets.add(sheetName);
+            errors.add(error);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Hash-partitions product rows by Handle into temporary CSV files, so every row of a handle ends up
+ * in the same partition and the partitions can be grouped and validated one at a time. Only the
+ * schema columns are spilled, in schema order, under the schema's column names. The partitions are
+ * read back through a plain buffered reader rather than a memory mapping, which would keep them
+ * locked (and undeletable on Windows) until the mapping is garbage collected.
+ */
+class HandlePartitionSpill implements Closeable {
+
+    private final File[] files;
+    private final CSVPrinter[] printers;
+    private final long[] rowCounts;
+
+    HandlePartitionSpill(File directory, int partitions) throws IOException {
+        this.files = new File[partitions];
+        this.printers = new CSVPrinter[partitions];
+        this.rowCounts = new long[partitions];
+        for (int i = 0; i < partitions; i++) {
+            files[i] = new File(directory, "handles-" + i + ".csv");
+        }
+    }
+
+    int getPartitionCount() {
+        return files.length;
+    }
+
+    long getRowCount(int partition) {
+        return rowCounts[partition];
+    }
+
+    void add(String handle, String[] values) throws IOException {
+        int partition = partitionOf(handle);
+        CSVPrinter printer = printers[partition];
+        if (printer == null) {
+            // Opened on first use; small files leave most partitions empty
+            printer = new CSVPrinter(Files.newBufferedWriter(files[partition].toPath(), StandardCharsets.UTF_8),
+                    CSVFormat.DEFAULT.withHeader(ProductSchema.COLUMN_NAMES));
+            printers[partition] = printer;
+        }
+        printer.printRecord((Object[]) values);
+        rowCounts[partition]++;
+    }
+
+    /** Closes the partition writers; call once all rows were added, before reading. */
+    void finishWriting() throws IOException {
+        for (int i = 0; i < printers.length; i++) {
+            if (printers[i] != null) {
+                printers[i].close();
+                printers[i] = null;
+            }
+        }
+    }
+
+    /** Opens a partition for reading; its records hold the schema columns in schema order. */
+    CSVParser openPartition(int partition) throws IOException {
+        return new CSVParser(Files.newBufferedReader(files[partition].toPath(), StandardCharsets.UTF_8),
+                CSVFormat.DEFAULT.withFirstRecordAsHeader());
+    }
+
+    /** Deletes a partition that has been processed, so the disk use shrinks as the run goes. */
+    void deletePartition(int partition) throws IOException {
+        File file = files[partition];
+        if (!file.delete() && file.exists()) {
+            throw new IOException("Cannot delete spill partition " + file);
+        }
+    }
+
+    // Leaves the directory to its owner, which reports anything that could not be deleted
+    @Override
+    public void close() throws IOException {
+        for (CSVPrinter printer : printers) {
+            if (printer != null) {
+                try {
+                    printer.close();
+                } catch (IOException e) {
+                    // deleting anyway
+                }
+            }
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private int partitionOf(String handle) {
+        int hash = handle.hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), files.length);
+    }
+}
@@ -0,0 +1,390 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CSV reader that memory-maps the file and tokenizes the UTF-8 bytes directly, instead of decoding
+ * every char through a Reader and building every field as commons-csv does. Only the projected
+ * columns are decoded to Strings; the other fields, however long (Body (HTML), the Google Shopping
+ * columns), are scanned for their closing quote or delimiter and never copied.
+ * <p>
+ * Reads what commons-csv's CSVFormat.DEFAULT.withHeader() reads: a UTF-8 BOM is skipped, the
+ * first record is the header, quoted fields may span lines and contain "" escapes, records end at
+ * CRLF, LF or CR, and empty lines are skipped. Files larger than one mapping are read through a
+ * moving window. The mapping is only released when the reader is garbage collected, and until then
+ * Windows will not let the file be deleted, so temporary files are not read through this class.
+ * Not thread-safe, but {@link #parseInParallel} can hand the tokenizing to a pool of range readers.
+ */
+final class MappedCsvReader implements Closeable {
+
+    // Largest mapping; bigger files are read a window at a time, remapped at a record start
+    static final long MAX_WINDOW_BYTES = 1L << 30;
+    private static final int MORE_INPUT = -1; // the record runs past the end of the window
+    private static final int NO_RECORD = -2;  // only empty lines were left, or the range is done
+
+    private final Path file;
+    private final boolean dropTrailingEmptyHeader;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long rangeEnd; // records starting at or after this offset belong to another reader
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int limit;     // bytes in the window
+    private boolean lastWindow;
+    private int position;  // start of the next record in the window
+
+    private final Map<String, Integer> headerMap = new LinkedHashMap<>();
+    private int[] slotOfColumn = new int[0]; // source column -> values slot, -1 for columns that are only scanned
+    private int projectedWidth;
+    private ParallelChunkParser chunks;      // set once parsing has been handed to a pool
+    private List<String> allFields;          // set while the header is read: every field is decoded
+    private byte[] scratch = new byte[256];
+
+    MappedCsvReader(Path file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * With dropTrailingEmptyHeader, a blank last header field is dropped, as spreadsheet exports
+     * leave a trailing comma on upload template headers; its column is then only scanned.
+     */
+    MappedCsvReader(Path file, boolean dropTrailingEmptyHeader) throws IOException {
+        this.file = file;
+        this.dropTrailingEmptyHeader = dropTrailingEmptyHeader;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.fileSize = channel.size();
+            this.rangeEnd = fileSize;
+            map(0);
+            if (limit >= 3 && window.get(0) == (byte) 0xEF && window.get(1) == (byte) 0xBB && window.get(2) == (byte) 0xBF) {
+                position = 3;
+            }
+            readHeader();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reader for the records that start in [start, end) of a file, with no header; start must be
+     * the start of a record. Used for the chunks of a parallel parse.
+     */
+    MappedCsvReader(Path file, long start, long end, int[] slotOfColumn, int projectedWidth) throws IOException {
+        this.file = file;
+        this.dropTrailingEmptyHeader = false;
+        this.slotOfColumn = slotOfColumn;
+        this.projectedWidth = projectedWidth;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.fileSize = channel.size();
+            this.rangeEnd = end;
+            map(Math.min(start, fileSize));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long getFileSize() {
+        return fileSize;
+    }
+
+    /** Header name to column index, like CSVParser.getHeaderMap(); empty for an empty file. */
+    Map<String, Integer> getHeaderMap() {
+        return headerMap;
+    }
+
+    /**
+     * Source column of each name, matched trimmed and ignoring case like the required-header
+     * checks; -1 for a name the header does not have.
+     */
+    int[] findColumns(List<String> names) {
+        int[] columns = new int[names.size()];
+        Arrays.fill(columns, -1);
+        for (Map.Entry<String, Integer> header : headerMap.entrySet()) {
+            String name = header.getKey().trim();
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] < 0 && names.get(i).equalsIgnoreCase(name)) {
+                    columns[i] = header.getValue();
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Decodes only these source columns from now on: values[i] of {@link #next} gets column
+     * sourceColumns[i], or "" when that is negative or the record is shorter.
+     */
+    void project(int[] sourceColumns) {
+        int width = 0;
+        for (int column : sourceColumns) {
+            width = Math.max(width, column + 1);
+        }
+        slotOfColumn = new int[width];
+        Arrays.fill(slotOfColumn, -1);
+        for (int slot = 0; slot < sourceColumns.length; slot++) {
+            if (sourceColumns[slot] >= 0) {
+                slotOfColumn[sourceColumns[slot]] = slot;
+            }
+        }
+        projectedWidth = sourceColumns.length;
+    }
+
+    /**
+     * Tokenizes the rest of the file on up to threads threads, chunkBytes at a time; {@link #next}
+     * still returns the records in file order. Call after {@link #project}. Does nothing when the
+     * rest of the file is less than two chunks.
+     */
+    void parseInParallel(int threads, long chunkBytes) throws IOException {
+        long dataStart = windowStart + position;
+        if (threads > 1 && fileSize - dataStart >= 2 * chunkBytes) {
+            chunks = new ParallelChunkParser(file, dataStart, fileSize, chunkBytes, slotOfColumn, projectedWidth, threads);
+        }
+    }
+
+    /** Reads the next record's projected columns into values; false at the end of the file. */
+    boolean next(String[] values) throws IOException {
+        if (chunks != null) {
+            return chunks.next(values);
+        }
+        while (true) {
+            Arrays.fill(values, "");
+            int end = readRecord(values);
+            if (end == NO_RECORD) {
+                return false;
+            }
+            if (end != MORE_INPUT) {
+                position = end;
+                return true;
+            }
+            if (position == 0 && limit == MAX_WINDOW_BYTES) {
+                throw new IOException("A record in " + file + " is longer than " + MAX_WINDOW_BYTES + " bytes");
+            }
+            map(windowStart + position);
+        }
+    }
+
+    /** Bytes allocated so far by the threads tokenizing chunks; 0 without a parallel parse, -1 if unknown. */
+    long getWorkerAllocatedBytes() {
+        return chunks != null ? chunks.getWorkerAllocatedBytes() : 0;
+    }
+
+    /** File offset just past the last record read. */
+    long offset() {
+        return windowStart + position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (chunks != null) {
+                chunks.close();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void readHeader() throws IOException {
+        allFields = new ArrayList<>();
+        String[] none = new String[0];
+        while (true) {
+            int end = readRecord(none);
+            if (end != MORE_INPUT) {
+                if (end != NO_RECORD) {
+                    position = end;
+                }
+                break;
+            }
+            allFields.clear();
+            map(windowStart + position);
+        }
+        if (dropTrailingEmptyHeader && allFields.size() > 1 && allFields.get(allFields.size() - 1).trim().isEmpty()) {
+            allFields.remove(allFields.size() - 1);
+        }
+        // Same rules as commons-csv 1.8 with duplicate header names allowed: the last one wins
+        for (int i = 0; i < allFields.size(); i++) {
+            String header = allFields.get(i);
+            if (header.trim().isEmpty() && headerMap.containsKey(header)) {
+                throw new IllegalArgumentException("A header name is missing in " + allFields);
+            }
+            headerMap.put(header, i);
+        }
+        allFields = null;
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        long length = Math.min(fileSize - start, MAX_WINDOW_BYTES);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        limit = (int) length;
+        lastWindow = start + length == fileSize;
+        position = 0;
+    }
+
+    /**
+     * Tokenizes the record at position (after skipping empty lines) and returns the offset just past
+     * its line break; NO_RECORD, with position moved past the empty lines, at the end of the file or
+     * range; or MORE_INPUT if the window ends before the record does.
+     */
+    private int readRecord(String[] values) throws IOException {
+        MappedByteBuffer buffer = window;
+        int i = position;
+        while (i < limit && (buffer.get(i) == '\n' || buffer.get(i) == '\r')) {
+            i++;
+        }
+        if (windowStart + i >= rangeEnd) {
+            position = i;
+            return NO_RECORD;
+        }
+        if (i == limit) {
+            return MORE_INPUT;
+        }
+
+        int column = 0;
+        while (true) {
+            int slot = allFields == null && column < slotOfColumn.length ? slotOfColumn[column] : -1;
+            boolean decode = slot >= 0 || allFields != null;
+            int fieldEnd;
+            byte b = i < limit ? buffer.get(i) : 0;
+            if (i < limit && b == '"') {
+                // Quoted: runs to the quote that is not followed by another quote
+                int start = i + 1;
+                boolean escapedQuotes = false;
+                i = start;
+                while (true) {
+                    if (i == limit) {
+                        if (lastWindow) {
+                            throw new IOException("End of file reached inside a quoted field that starts at byte "
+                                    + (windowStart + start - 1) + " of " + file);
+                        }
+                        return MORE_INPUT;
+                    }
+                    if (buffer.get(i) == '"') {
+                        if (i + 1 == limit && !lastWindow) {
+                            return MORE_INPUT;
+                        }
+                        if (i + 1 < limit && buffer.get(i + 1) == '"') {
+                            escapedQuotes = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                if (decode) {
+                    store(values, slot, decode(buffer, start, i, escapedQuotes));
+                }
+                i++;
+                // Only whitespace may follow the closing quote
+                while (i < limit) {
+                    b = buffer.get(i);
+                    if (b == ',' || b == '\n' || b == '\r') {
+                        break;
+                    }
+                    if (!isWhitespace(buffer, i)) {
+                        throw new IOException("Invalid character after the closing quote at byte " + (windowStart + i) + " of " + file);
+                    }
+                    i += b >= 0 ? 1 : utf8Length(b);
+                }
+                fieldEnd = i;
+            } else {
+                int start = i;
+                while (i < limit && (b = buffer.get(i)) != ',' && b != '\n' && b != '\r') {
+                    i++;
+                }
+                if (decode) {
+                    store(values, slot, decode(buffer, start, i, false));
+                }
+                fieldEnd = i;
+            }
+
+            if (fieldEnd == limit) {
+                return lastWindow ? limit : MORE_INPUT;
+            }
+            b = buffer.get(fieldEnd);
+            if (b == ',') {
+                i = fieldEnd + 1;
+                column++;
+                continue;
+            }
+            // CRLF, LF or a lone CR ends the record
+            if (b == '\r') {
+                if (fieldEnd + 1 == limit) {
+                    return lastWindow ? limit : MORE_INPUT;
+                }
+                if (buffer.get(fieldEnd + 1) == '\n') {
+                    return fieldEnd + 2;
+                }
+            }
+            return fieldEnd + 1;
+        }
+    }
+
+    private void store(String[] values, int slot, String value) {
+        if (allFields != null) {
+            allFields.add(value);
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    // Copies the field's bytes, collapsing "" to ", and decodes them; malformed UTF-8 becomes U+FFFD like in a Reader
+    private String decode(MappedByteBuffer buffer, int start, int end, boolean escapedQuotes) {
+        int length = end - start;
+        if (length == 0) {
+            return "";
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            scratch[n++] = b;
+            if (escapedQuotes && b == '"') {
+                i++; // the second quote of the pair
+            }
+        }
+        return new String(scratch, 0, n, StandardCharsets.UTF_8);
+    }
+
+    // Character.isWhitespace of the char starting at i, which commons-csv allows after a closing quote
+    private boolean isWhitespace(MappedByteBuffer buffer, int i) {
+        byte b = buffer.get(i);
+        if (b >= 0) {
+            return Character.isWhitespace((char) b);
+        }
+        int length = utf8Length(b);
+        if (length < 2 || i + length > limit) {
+            return false;
+        }
+        return Character.isWhitespace(new String(scratchOf(buffer, i, length), 0, length, StandardCharsets.UTF_8).charAt(0));
+    }
+
+    private byte[] scratchOf(MappedByteBuffer buffer, int start, int length) {
+        for (int k = 0; k < length; k++) {
+            scratch[k] = buffer.get(start + k);
+        }
+        return scratch;
+    }
+
+    private static int utf8Length(byte lead) {
+        int b = lead & 0xff;
+        return b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary behind the low-cardinality columns of a {@link ProductTable}. Every distinct value
+ * gets a code, and every code a case-folded id shared by all values that are equal ignoring case
+ * ("Size", "SIZE", "size"), so the option rules compare ints instead of calling equalsIgnoreCase or
+ * toLowerCase per row. The option words the rules look for are registered first, which makes their
+ * folded ids the constants below in every dictionary.
+ * <p>
+ * Filled by one thread; read-only once the table is handed over.
+ */
+final class OptionDictionary {
+
+    static final int EMPTY = 0;
+    static final int TITLE = 1;
+    static final int DEFAULT_TITLE = 2;
+    static final int COLOR = 3;
+    static final int COLOUR = 4;
+    static final int SIZE = 5;
+    static final int CATEGORY = 6;
+    static final int GROUP = 7;
+
+    // Folded forms of the ids above, in id order
+    private static final String[] KNOWN_FOLDED = {"", "title", "default title", "color", "colour", "size", "category", "group"};
+
+    private String[] values = new String[64];
+    private int[] foldedIds = new int[64];
+    private int size;
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final Map<String, Integer> foldedIdsByKey = new HashMap<>();
+
+    OptionDictionary() {
+        for (int id = 0; id < KNOWN_FOLDED.length; id++) {
+            foldedIdsByKey.put(KNOWN_FOLDED[id], id);
+        }
+        encode(""); // code 0
+    }
+
+    /** The option names Shopify templates may use: color, colour, size, category, group and title. */
+    static boolean isValidOptionType(int foldedId) {
+        return foldedId == TITLE || foldedId >= COLOR && foldedId <= GROUP;
+    }
+
+    int encode(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size << 1);
+            foldedIds = Arrays.copyOf(foldedIds, size << 1);
+        }
+        int newCode = size++;
+        values[newCode] = value;
+        foldedIds[newCode] = foldedIdOf(value);
+        codes.put(value, newCode);
+        return newCode;
+    }
+
+    String value(int code) {
+        return values[code];
+    }
+
+    int foldedId(int code) {
+        return foldedIds[code];
+    }
+
+    private int foldedIdOf(String value) {
+        String key = fold(value);
+        Integer id = foldedIdsByKey.get(key);
+        if (id == null) {
+            id = foldedIdsByKey.size();
+            foldedIdsByKey.put(key, id);
+        }
+        return id;
+    }
+
+    // Two strings fold to the same key exactly when String.equalsIgnoreCase considers them equal
+    static String fold(String value) {
+        char[] chars = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            char folded = Character.toLowerCase(Character.toUpperCase(c));
+            if (folded != c) {
+                if (chars == null) {
+                    chars = value.toCharArray();
+                }
+                chars[i] = folded;
+            }
+        }
+        return chars == null ? value : new String(chars);
+    }
+}
@@ -0,0 +1,268 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tokenizes the records of a CSV in chunks on a thread pool and hands them back in file order, for
+ * {@link MappedCsvReader#parseInParallel}. A chunk must start at a record, but a line break inside a
+ * quoted field (HTML bodies have plenty) is not one, so split points are found in two steps: every
+ * chunk's quotes are counted in parallel, and the running parity says whether a nominal split point
+ * is inside quotes; the split is moved to the first line break after it that is outside quotes.
+ * <p>
+ * The parity is only a guess: a quote in the middle of an unquoted field (12" pipe) is a literal
+ * and does not open a quoted field, and the parity is then off for every later chunk. So a chunk is
+ * only used if it starts exactly where the previous one ended; at the first one that does not, the
+ * pool is stopped and the rest of the file is read sequentially on the calling thread. A wrong
+ * guess costs the parallelism, never a record. Errors in a chunk are raised only once every record
+ * before them has been returned, as a sequential read would.
+ */
+final class ParallelChunkParser implements Closeable {
+
+    private static final int ROWS_PER_CHUNK_GUESS = 1024;
+
+    private final Path file;
+    private final long dataEnd;
+    private final long chunkBytes;
+    private final int[] slotOfColumn;
+    private final int width;
+    private final FileChannel channel;
+    private final ExecutorService pool;
+    private final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+    private final int chunkCount;
+    private final List<Future<Boolean>> quoteParities = new ArrayList<>();
+    private final ArrayDeque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+    private final int maxInFlight;
+    private final long dataStart;
+    private int nextToSubmit;
+
+    private long expectedStart; // where the next chunk has to start: just past the last record returned
+    private ParsedChunk current;
+    private int row;
+    private MappedCsvReader sequential; // reads the rest of the file once the split guesses went wrong
+
+    ParallelChunkParser(Path file, long dataStart, long dataEnd, long chunkBytes, int[] slotOfColumn, int width, int threads) throws IOException {
+        this.file = file;
+        this.dataStart = dataStart;
+        this.dataEnd = dataEnd;
+        this.chunkBytes = chunkBytes;
+        this.slotOfColumn = slotOfColumn.clone();
+        this.width = width;
+        this.expectedStart = dataStart;
+        this.chunkCount = (int) ((dataEnd - dataStart + chunkBytes - 1) / chunkBytes);
+        this.maxInFlight = threads * 2;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "csv-parse-chunk");
+            thread.setDaemon(true);
+            workers.add(thread);
+            return thread;
+        });
+        // Queued ahead of every parse task, so a parse task waiting on a parity never starves the pool
+        for (int k = 0; k < chunkCount; k++) {
+            long start = nominalStart(k);
+            long end = Math.min(start + chunkBytes, dataEnd);
+            quoteParities.add(pool.submit(() -> countQuotes(start, end)));
+        }
+        fill();
+    }
+
+    boolean next(String[] values) throws IOException {
+        if (sequential != null) {
+            return sequential.next(values);
+        }
+        while (current == null || row == current.rows) {
+            if (current != null) {
+                if (current.error != null) {
+                    throw current.error;
+                }
+                expectedStart = current.end;
+            }
+            if (inFlight.isEmpty()) {
+                current = null;
+                return false;
+            }
+            ParsedChunk chunk = await(inFlight.poll());
+            if (chunk.start != expectedStart) {
+                // The split guess was wrong, and so are the later ones: read on from the real record start
+                readRestSequentially();
+                return sequential.next(values);
+            }
+            fill();
+            current = chunk;
+            row = 0;
+        }
+        System.arraycopy(current.values, row * width, values, 0, width);
+        row++;
+        return true;
+    }
+
+    // The pool lives as long as this parser, so its threads' counters only hold this file's work
+    long getWorkerAllocatedBytes() {
+        return RunMetrics.allocatedBytes(workers);
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        try {
+            if (sequential != null) {
+                sequential.close();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void readRestSequentially() throws IOException {
+        pool.shutdownNow();
+        inFlight.clear();
+        current = null;
+        sequential = new MappedCsvReader(file, expectedStart, dataEnd, slotOfColumn, width);
+    }
+
+    private void fill() {
+        while (inFlight.size() < maxInFlight && nextToSubmit < chunkCount) {
+            int k = nextToSubmit++;
+            inFlight.add(pool.submit(() -> parse(boundary(k), boundary(k + 1))));
+        }
+    }
+
+    private long nominalStart(int k) {
+        return dataStart + k * chunkBytes;
+    }
+
+    // The records of [start, limit) with their errors; a chunk never throws, its result may be discarded
+    private ParsedChunk parse(long start, long limit) {
+        ParsedChunk chunk = new ParsedChunk(start, width);
+        String[] record = new String[width];
+        try (MappedCsvReader reader = new MappedCsvReader(file, start, limit, slotOfColumn, width)) {
+            try {
+                while (reader.next(record)) {
+                    chunk.add(record);
+                }
+            } catch (IOException e) {
+                chunk.error = e;
+            }
+            chunk.end = reader.offset();
+        } catch (IOException e) {
+            chunk.error = e;
+        }
+        return chunk;
+    }
+
+    // Start of chunk k: just past the first line break (and any blank lines) outside quotes after its
+    // nominal start, as far as the quote parity can tell
+    private long boundary(int k) throws IOException, InterruptedException, ExecutionException {
+        if (k == 0) {
+            return dataStart;
+        }
+        if (k == chunkCount) {
+            return dataEnd;
+        }
+        boolean inQuotes = false;
+        for (int i = 0; i < k; i++) {
+            inQuotes ^= quoteParities.get(i).get();
+        }
+        long position = nominalStart(k);
+        boolean lineBreak = false;
+        while (position < dataEnd) {
+            MappedByteBuffer window = map(position, dataEnd);
+            int limit = window.limit();
+            int i = 0;
+            for (; !lineBreak && i < limit; i++) {
+                byte b = window.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (!inQuotes && (b == '\n' || b == '\r')) {
+                    lineBreak = true;
+                }
+            }
+            while (lineBreak && i < limit && (window.get(i) == '\n' || window.get(i) == '\r')) {
+                i++;
+            }
+            if (i < limit) {
+                return position + i;
+            }
+            position += limit;
+        }
+        return dataEnd;
+    }
+
+    private boolean countQuotes(long start, long end) throws IOException {
+        boolean odd = false;
+        for (long position = start; position < end; ) {
+            MappedByteBuffer window = map(position, end);
+            int limit = window.limit();
+            for (int i = 0; i < limit; i++) {
+                if (window.get(i) == '"') {
+                    odd = !odd;
+                }
+            }
+            position += limit;
+        }
+        return odd;
+    }
+
+    private MappedByteBuffer map(long position, long end) throws IOException {
+        long length = Math.min(end - position, MappedCsvReader.MAX_WINDOW_BYTES);
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    private ParsedChunk await(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing " + file);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Splitting " + file + " into chunks failed", cause);
+        }
+    }
+
+    // A chunk's records, row after row of width projected values
+    private static final class ParsedChunk {
+        final long start;
+        final int width;
+        long end;
+        String[] values;
+        int rows;
+        IOException error;
+
+        ParsedChunk(long start, int width) {
+            this.start = start;
+            this.width = width;
+            this.values = new String[ROWS_PER_CHUNK_GUESS * width];
+        }
+
+        void add(String[] record) {
+            if ((rows + 1) * width > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            System.arraycopy(record, 0, values, rows * width, width);
+            rows++;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example;
+
+import java.io.File;
+
+/**
+ * Tuning knobs for {@link CsvProcessor} and {@link UploadTemplateProcessor}. The defaults suit the
+ * desktop app. Apart from the order of the rows (see {@link #isContiguousHandles()} and
+ * {@link #getSpillThresholdBytes()}), the output does not depend on them.
+ */
+public class ProcessingOptions {
+
+    private int validationParallelism = Runtime.getRuntime().availableProcessors();
+    private int parseParallelism = Runtime.getRuntime().availableProcessors();
+    private long twoPassUploadThresholdBytes = 256L * 1024 * 1024;
+    private long spillThresholdBytes = 256L * 1024 * 1024;
+    private File spillDirectory;
+    private boolean contiguousHandles = true;
+    private boolean pipelined = true;
+    private SkuIndex skuIndex;
+    private boolean recordSkus;
+
+    /** Number of threads validating handle groups; 1 validates on the calling thread. */
+    public int getValidationParallelism() {
+        return validationParallelism;
+    }
+
+    public void setValidationParallelism(int validationParallelism) {
+        if (validationParallelism < 1) {
+            throw new IllegalArgumentException("Validation parallelism must be at least 1, got " + validationParallelism);
+        }
+        this.validationParallelism = validationParallelism;
+    }
+
+    /**
+     * Number of threads tokenizing large product CSVs, a chunk each; rows still reach validation in
+     * file order. 1 parses on the calling thread.
+     */
+    public int getParseParallelism() {
+        return parseParallelism;
+    }
+
+    public void setParseParallelism(int parseParallelism) {
+        if (parseParallelism < 1) {
+            throw new IllegalArgumentException("Parse parallelism must be at least 1, got " + parseParallelism);
+        }
+        this.parseParallelism = parseParallelism;
+    }
+
+    /**
+     * Product upload templates of at least this size are read twice (fingerprints first, then
+     * routing) instead of being held in memory. 0 always uses two passes.
+     */
+    public long getTwoPassUploadThresholdBytes() {
+        return twoPassUploadThresholdBytes;
+    }
+
+    public void setTwoPassUploadThresholdBytes(long twoPassUploadThresholdBytes) {
+        if (twoPassUploadThresholdBytes < 0) {
+            throw new IllegalArgumentException("Two-pass threshold cannot be negative, got " + twoPassUploadThresholdBytes);
+        }
+        this.twoPassUploadThresholdBytes = twoPassUploadThresholdBytes;
+    }
+
+    /**
+     * Product CSVs of at least this size are grouped by handle through temporary partition files
+     * instead of in memory. 0 always spills. A spilled run finds the same errors, but handles come
+     * out partition by partition, so rows are ordered differently and, when two handles share a
+     * SKU, the other copy may be the one reported as the duplicate.
+     */
+    public long getSpillThresholdBytes() {
+        return spillThresholdBytes;
+    }
+
+    public void setSpillThresholdBytes(long spillThresholdBytes) {
+        if (spillThresholdBytes < 0) {
+            throw new IllegalArgumentException("Spill threshold cannot be negative, got " + spillThresholdBytes);
+        }
+        this.spillThresholdBytes = spillThresholdBytes;
+    }
+
+    /** Where spill files go; null uses java.io.tmpdir. */
+    public File getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public void setSpillDirectory(File spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Streams product CSVs whose rows are ordered by handle (Shopify exports are): each group is
+     * validated and written once the handle changes, and rows come out in file order. A file where a
+     * handle reappears later is regrouped as a whole instead. Off: always group the whole file.
+     */
+    public boolean isContiguousHandles() {
+        return contiguousHandles;
+    }
+
+    public void setContiguousHandles(boolean contiguousHandles) {
+        this.contiguousHandles = contiguousHandles;
+    }
+
+    /**
+     * Runs the parse, validate and write stages of a contiguous run on separate threads with
+     * bounded queues between them. Off: the stages take turns on the calling thread.
+     */
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * SKUs and product codes found in this index are reported as already existing. null: only
+     * duplicates within the file are checked. The caller opens and closes the index.
+     */
+    public SkuIndex getSkuIndex() {
+        return skuIndex;
+    }
+
+    public void setSkuIndex(SkuIndex skuIndex) {
+        this.skuIndex = skuIndex;
+    }
+
+    /**
+     * Adds the SKUs of valid rows (validate) or of the processed file (uploads) to the SKU index
+     * once the output is written, so later runs flag them. Off by default, so checking the same file twice gives the same result.
+     */
+    public boolean isRecordSkus() {
+        return recordSkus;
+    }
+
+    public void setRecordSkus(boolean recordSkus) {
+        this.recordSkus = recordSkus;
+    }
+}
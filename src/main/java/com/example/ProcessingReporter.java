@@ -0,0 +1,15 @@
+package com.example;
+
+/**
+ * Where the processors send their user-facing messages. The JavaFX app appends them to the
+ * messages area, the CLI prints them. Messages come without an "Error:"/"Info:" prefix; how they
+ * are labelled is up to the implementation. Implementations must be safe to call from worker threads.
+ */
+public interface ProcessingReporter {
+
+    void info(String message);
+
+    void warning(String message);
+
+    void error(String message);
+}
@@ -0,0 +1,108 @@
+package com.example;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Summary of a single CsvProcessor run: how many rows landed on each output sheet, how the
+ * Success rows break down by meta status, and the {@link RunMetrics} of each stage. Everything needed to
+ * decide whether the file has errors is already here, so callers do not have to re-read the
+ * workbook that was just written.
+ */
+public class ProcessingResult {
+
+    private final String outputFilePath;
+    private final Map<String, Integer> sheetCounts = new LinkedHashMap<>();
+    private final Map<String, Integer> metaStatusCounts = new LinkedHashMap<>();
+    private final RunMetrics metrics;
+    private long rowsRead;
+    private long imageRowsSkipped;
+
+    public ProcessingResult(String outputFilePath) {
+        this(outputFilePath, new RunMetrics(0));
+    }
+
+    ProcessingResult(String outputFilePath, RunMetrics metrics) {
+        this.outputFilePath = outputFilePath;
+        this.metrics = metrics;
+    }
+
+    void setSheetCount(String sheetName, int count) {
+        sheetCounts.put(sheetName, count);
+    }
+
+    void countMetaStatus(String metaStatus) {
+        metaStatusCounts.merge(metaStatus != null ? metaStatus : "", 1, Integer::sum);
+    }
+
+    void setRowsRead(long rowsRead) {
+        this.rowsRead = rowsRead;
+    }
+
+    void setImageRowsSkipped(long imageRowsSkipped) {
+        this.imageRowsSkipped = imageRowsSkipped;
+    }
+
+    public String getOutputFilePath() {
+        return outputFilePath;
+    }
+
+    /** Row counts per output sheet, in workbook order. */
+    public Map<String, Integer> getSheetCounts() {
+        return Collections.unmodifiableMap(sheetCounts);
+    }
+
+    /** Meta Status values of the Success sheet rows; the empty string counts clean rows. */
+    public Map<String, Integer> getMetaStatusCounts() {
+        return Collections.unmodifiableMap(metaStatusCounts);
+    }
+
+    /** Wall time, rows and allocations per stage, and the peak heap seen during the run. */
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Wall time per stage in milliseconds, in the order the stages ran. */
+    public Map<String, Long> getStageMillis() {
+        Map<String, Long> stageMillis = new LinkedHashMap<>();
+        for (RunMetrics.Stage stage : metrics.getStages().values()) {
+            stageMillis.put(stage.getName(), stage.getNanos() / 1_000_000);
+        }
+        return Collections.unmodifiableMap(stageMillis);
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getImageRowsSkipped() {
+        return imageRowsSkipped;
+    }
+
+    public int getErrorCount() {
+        int total = 0;
+        for (Map.Entry<String, Integer> entry : sheetCounts.entrySet()) {
+            if (!CsvProcessor.SUCCESS_SHEET.equals(entry.getKey())) {
+                total += entry.getValue();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Same verdict as {@link CsvProcessor#hasErrors(java.io.File)} on the written workbook: any
+     * row on an error sheet, or any Success row with a non-empty Meta Status.
+     */
+    public boolean hasErrors() {
+        if (getErrorCount() > 0) {
+            return true;
+        }
+        for (Map.Entry<String, Integer> entry : metaStatusCounts.entrySet()) {
+            if (!entry.getKey().isEmpty() && entry.getValue() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example;
+
+/**
+ * One row of a {@link ProductTable}: the schema columns of a product record, in
+ * {@link ProductSchema} order. Only these columns are validated and written, so records are
+ * added to a table as they are parsed and the rest of the record (Body HTML, image and price
+ * columns) is garbage as soon as the row is read. Rows are compared by identity.
+ */
+final class ProductRow {
+
+    private final ProductTable table;
+    private final int index;
+
+    ProductRow(ProductTable table, int index) {
+        this.table = table;
+        this.index = index;
+    }
+
+    /** Value of a schema column; "" when the source column was empty or missing. */
+    String get(int column) {
+        return table.get(index, column);
+    }
+
+    /** Case-folded id of an option or category column; equal ids mean equalsIgnoreCase values. */
+    int foldedId(int column) {
+        return table.foldedId(index, column);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Shopify columns the product validator works with, resolved once against a file's header
+ * into positional indices. Lookups in the per-row hot path are then plain array reads instead of
+ * header-name hash lookups.
+ */
+final class ProductSchema {
+
+    static final int HANDLE = 0;
+    static final int TITLE = 1;
+    static final int PRODUCT_CATEGORY = 2;
+    static final int OPTION1_NAME = 3;
+    static final int OPTION1_VALUE = 4;
+    static final int OPTION2_NAME = 5;
+    static final int OPTION2_VALUE = 6;
+    static final int VARIANT_SKU = 7;
+
+    static final String[] COLUMN_NAMES = {"Handle", "Title", "Product Category", "Option1 Name", "Option1 Value", "Option2 Name", "Option2 Value", "Variant SKU"};
+
+    static final int COLUMN_COUNT = COLUMN_NAMES.length;
+
+    private final int[] sourceIndex;
+
+    private ProductSchema(int[] sourceIndex) {
+        this.sourceIndex = sourceIndex;
+    }
+
+    /**
+     * Resolves the columns against a parser header map. Header names are matched trimmed and
+     * case-insensitively, like the required-header check; unresolved columns map to -1.
+     */
+    static ProductSchema compile(Map<String, Integer> headerMap) {
+        int[] sourceIndex = new int[COLUMN_COUNT];
+        Arrays.fill(sourceIndex, -1);
+        for (Map.Entry<String, Integer> header : headerMap.entrySet()) {
+            String name = header.getKey() != null ? header.getKey().trim() : "";
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                if (sourceIndex[column] < 0 && COLUMN_NAMES[column].equalsIgnoreCase(name)) {
+                    sourceIndex[column] = header.getValue();
+                }
+            }
+        }
+        return new ProductSchema(sourceIndex);
+    }
+
+    List<String> getMissingColumns() {
+        List<String> missing = new ArrayList<>();
+        for (int column = 0; column < COLUMN_COUNT; column++) {
+            if (sourceIndex[column] < 0) {
+                missing.add(COLUMN_NAMES[column]);
+            }
+        }
+        return missing;
+    }
+
+    int getSourceIndex(int column) {
+        return sourceIndex[column];
+    }
+
+    /** Source column of every schema column, in schema order; the projection a reader decodes. */
+    int[] getSourceIndices() {
+        return sourceIndex.clone();
+    }
+}
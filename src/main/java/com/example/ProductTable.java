@@ -0,0 +1,98 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * Column store for the schema columns of a run's product rows. Handle, Title and Variant SKU are
+ * kept as string arrays (a value equal to the previous row's, like the handle of every variant,
+ * shares that row's string); the low-cardinality columns (category, option names and values) are
+ * int codes into one {@link OptionDictionary}, so a catalog holds each distinct "Size" or
+ * "Default Title" once and the option rules can compare case-folded ids. Rows are read back
+ * through {@link ProductRow} views.
+ * <p>
+ * Rows are appended by one thread. Once the table is handed over (after a queue hand-off or
+ * with the whole file read) any number of threads may read it.
+ */
+final class ProductTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final boolean[] ENCODED_COLUMNS = new boolean[ProductSchema.COLUMN_COUNT];
+
+    static {
+        ENCODED_COLUMNS[ProductSchema.PRODUCT_CATEGORY] = true;
+        ENCODED_COLUMNS[ProductSchema.OPTION1_NAME] = true;
+        ENCODED_COLUMNS[ProductSchema.OPTION1_VALUE] = true;
+        ENCODED_COLUMNS[ProductSchema.OPTION2_NAME] = true;
+        ENCODED_COLUMNS[ProductSchema.OPTION2_VALUE] = true;
+    }
+
+    private final String[][] stringColumns = new String[ProductSchema.COLUMN_COUNT][]; // null for encoded columns
+    private final int[][] codeColumns = new int[ProductSchema.COLUMN_COUNT][];         // null for string columns
+    private final OptionDictionary dictionary = new OptionDictionary();
+    private int size;
+
+    ProductTable() {
+        for (int column = 0; column < ProductSchema.COLUMN_COUNT; column++) {
+            if (ENCODED_COLUMNS[column]) {
+                codeColumns[column] = new int[INITIAL_CAPACITY];
+            } else {
+                stringColumns[column] = new String[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    /** Appends a record's schema columns, in {@link ProductSchema} order, and returns the view of the new row. */
+    ProductRow add(String[] values) {
+        if (size == capacity()) {
+            grow();
+        }
+        int row = size++;
+        for (int column = 0; column < ProductSchema.COLUMN_COUNT; column++) {
+            String value = values[column];
+            if (codeColumns[column] != null) {
+                codeColumns[column][row] = dictionary.encode(value);
+            } else {
+                String[] strings = stringColumns[column];
+                if (row > 0 && value.equals(strings[row - 1])) {
+                    value = strings[row - 1];
+                }
+                strings[row] = value;
+            }
+        }
+        return row(row);
+    }
+
+    /** View of a row already added. */
+    ProductRow row(int row) {
+        return new ProductRow(this, row);
+    }
+
+    String get(int row, int column) {
+        int[] codes = codeColumns[column];
+        return codes != null ? dictionary.value(codes[row]) : stringColumns[column][row];
+    }
+
+    /** Case-folded {@link OptionDictionary} id of a dictionary-encoded column's value. */
+    int foldedId(int row, int column) {
+        return dictionary.foldedId(codeColumns[column][row]);
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int capacity() {
+        return stringColumns[ProductSchema.HANDLE].length;
+    }
+
+    private void grow() {
+        int newCapacity = capacity() << 1;
+        for (int column = 0; column < ProductSchema.COLUMN_COUNT; column++) {
+            if (codeColumns[column] != null) {
+                codeColumns[column] = Arrays.copyOf(codeColumns[column], newCapacity);
+            } else {
+                stringColumns[column] = Arrays.copyOf(stringColumns[column], newCapacity);
+            }
+        }
+    }
+}
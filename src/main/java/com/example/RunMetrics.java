@@ -0,0 +1,312 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage wall time, rows and allocated bytes of one CsvProcessor run, plus the run's wall time
+ * and the peak heap seen while it ran. A stage that runs in pieces (per batch, per partition) adds up its pieces, and
+ * the pipeline's stage threads record into the same instance. Stages a mode does not run on their
+ * own are left out: contiguous mode cuts the handle groups while parsing, so it has no "group".
+ * <p>
+ * Allocated bytes come from the JVM's per-thread allocation counters, for the thread that ran the
+ * stage plus the parse and validation pool threads working for it; -1 where the JVM has no such
+ * counters. Bytes per second is over the input file, for the stages that go through all of it.
+ * <p>
+ * The peak heap is the JVM's heap in use, sampled while the run goes on: it is process-wide, so
+ * runs that overlap (batch jobs) each see the others' objects too.
+ */
+public class RunMetrics {
+
+    public static final String PARSE = "parse";
+    public static final String GROUP = "group";
+    public static final String VALIDATE = "validate";
+    public static final String WRITE_ERRORS = "write errors";
+    public static final String WRITE_SUCCESS = "write success";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATION_COUNTERS = enableAllocationCounters();
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    private static final long HEAP_SAMPLE_MILLIS = 20;
+    // One daemon thread samples the heap for every run in progress
+    private static final ScheduledExecutorService HEAP_SAMPLER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "run-metrics-heap-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long inputBytes;
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private long startNanos;
+    private long wallNanos;
+    private long peakHeapBytes = -1;
+    private long sampledHeapBytes;
+    private ScheduledFuture<?> heapSampling;
+
+    public RunMetrics(long inputBytes) {
+        this.inputBytes = inputBytes;
+    }
+
+    /** One stage's totals. */
+    public static final class Stage {
+        private final String name;
+        private long nanos;
+        private long allocatedBytes;
+        private long rows;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Bytes allocated by the threads working on the stage, or -1 if the JVM cannot tell or the
+         * validation pool was shared with another file meanwhile.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+    }
+
+    /** Where a stage piece started on the calling thread: its clock and its allocation counter. */
+    static final class Span {
+        final long startNanos = System.nanoTime();
+        final long startAllocated = currentThreadAllocatedBytes();
+    }
+
+    static Span start() {
+        return new Span();
+    }
+
+    // Starts the run clock and the heap sampling. The JVM's own pool peaks are left alone: they are
+    // shared with every other run in the process.
+    synchronized void startRun() {
+        startNanos = System.nanoTime();
+        sampledHeapBytes = 0;
+        sampleHeap();
+        heapSampling = HEAP_SAMPLER.scheduleAtFixedRate(this::sampleHeap, HEAP_SAMPLE_MILLIS, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Stops the run clock and the heap sampling; also called for a run that failed, so the sampler
+    // lets go of it. Peaks between two samples are missed, so the peak heap is a lower bound.
+    synchronized void finishRun() {
+        if (heapSampling == null) {
+            return;
+        }
+        heapSampling.cancel(false);
+        heapSampling = null;
+        sampleHeap();
+        wallNanos = System.nanoTime() - startNanos;
+        peakHeapBytes = sampledHeapBytes;
+    }
+
+    private synchronized void sampleHeap() {
+        sampledHeapBytes = Math.max(sampledHeapBytes, MEMORY.getHeapMemoryUsage().getUsed());
+    }
+
+    /** Adds the time and this thread's allocations since span started to the stage. */
+    void record(String stage, Span span, long rows) {
+        record(stage, span, rows, 0);
+    }
+
+    /** Same, plus bytes other threads allocated for this piece of the stage. */
+    void record(String stage, Span span, long rows, long otherThreadsAllocatedBytes) {
+        long allocated = -1;
+        if (span.startAllocated >= 0 && otherThreadsAllocatedBytes >= 0) {
+            allocated = currentThreadAllocatedBytes() - span.startAllocated + otherThreadsAllocatedBytes;
+        }
+        record(stage, System.nanoTime() - span.startNanos, allocated, rows);
+    }
+
+    synchronized void record(String stage, long nanos, long allocatedBytes, long rows) {
+        Stage totals = stages.computeIfAbsent(stage, Stage::new);
+        totals.nanos += nanos;
+        totals.rows += rows;
+        totals.allocatedBytes = totals.allocatedBytes < 0 || allocatedBytes < 0 ? -1 : totals.allocatedBytes + allocatedBytes;
+    }
+
+    // Forgets the stages recorded so far, for a run that starts over; the run clock keeps going
+    synchronized void clearStages() {
+        stages.clear();
+    }
+
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+    /** The recorded stages, in the order they first ran. */
+    public synchronized Map<String, Stage> getStages() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(stages));
+    }
+
+    public synchronized long getWallNanos() {
+        return wallNanos;
+    }
+
+    /** Most heap in use (process-wide) seen during the run in bytes, or -1 before the run has finished. */
+    public synchronized long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /** Rows per second of wall time spent in the stage. */
+    public static double rowsPerSecond(Stage stage) {
+        return stage.rows / seconds(stage.nanos);
+    }
+
+    /** Input bytes per second for the stages that go through the whole input, else -1. */
+    public double bytesPerSecond(Stage stage) {
+        return readsInput(stage.name) ? inputBytes / seconds(stage.nanos) : -1;
+    }
+
+    /** One line per stage, for the message area and the console. */
+    public synchronized String format() {
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT, "Run: %.2f s, %.1f MB input, peak heap %s",
+                wallNanos / 1e9, inputBytes / 1048576.0, megabytes(peakHeapBytes)));
+        for (Stage stage : stages.values()) {
+            text.append(String.format(Locale.ROOT, "\n  %-13s %8.1f ms  %9d rows  %10.0f rows/s  %9s  alloc %s",
+                    stage.name, stage.nanos / 1e6, stage.rows, rowsPerSecond(stage),
+                    readsInput(stage.name) ? String.format(Locale.ROOT, "%.1f MB/s", bytesPerSecond(stage) / 1048576.0) : "-",
+                    megabytes(stage.allocatedBytes)));
+        }
+        return text.toString();
+    }
+
+    /** Writes the run report: the result's counts, then the run and per-stage metrics. */
+    synchronized void writeJson(File reportFile, String inputFilePath, ProcessingResult result) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"input\": ").append(quote(inputFilePath)).append(",\n");
+        json.append("  \"output\": ").append(quote(result.getOutputFilePath())).append(",\n");
+        json.append("  \"inputBytes\": ").append(inputBytes).append(",\n");
+        json.append("  \"rowsRead\": ").append(result.getRowsRead()).append(",\n");
+        json.append("  \"imageRowsSkipped\": ").append(result.getImageRowsSkipped()).append(",\n");
+        json.append("  \"errorRows\": ").append(result.getErrorCount()).append(",\n");
+        json.append("  \"hasErrors\": ").append(result.hasErrors()).append(",\n");
+        json.append("  \"sheetCounts\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Integer> entry : result.getSheetCounts().entrySet()) {
+            json.append(separator).append("    ").append(quote(entry.getKey())).append(": ").append(entry.getValue());
+            separator = ",\n";
+        }
+        json.append(result.getSheetCounts().isEmpty() ? "},\n" : "\n  },\n");
+        json.append("  \"wallMillis\": ").append(millis(wallNanos)).append(",\n");
+        json.append("  \"peakHeapBytes\": ").append(orNull(peakHeapBytes)).append(",\n");
+        json.append("  \"stages\": [");
+        separator = "\n";
+        for (Stage stage : stages.values()) {
+            json.append(separator).append("    {")
+                    .append("\"name\": ").append(quote(stage.name))
+                    .append(", \"wallMillis\": ").append(millis(stage.nanos))
+                    .append(", \"rows\": ").append(stage.rows)
+                    .append(", \"rowsPerSecond\": ").append(Math.round(rowsPerSecond(stage)))
+                    .append(", \"bytesPerSecond\": ").append(readsInput(stage.name) ? Long.toString(Math.round(bytesPerSecond(stage))) : "null")
+                    .append(", \"allocatedBytes\": ").append(orNull(stage.allocatedBytes))
+                    .append('}');
+            separator = ",\n";
+        }
+        json.append(stages.isEmpty() ? "]\n" : "\n  ]\n").append("}\n");
+        try (Writer out = new OutputStreamWriter(Files.newOutputStream(reportFile.toPath()), StandardCharsets.UTF_8)) {
+            out.write(json.toString());
+        }
+    }
+
+    /** The report's place next to the output workbook: name_attempt_N.xlsx gets name_attempt_N.metrics.json. */
+    static File reportFileFor(String outputFilePath) {
+        return new File(outputFilePath.replaceFirst("(?i)[.]xlsx$", "") + ".metrics.json");
+    }
+
+    /** Total bytes the live threads among these have allocated so far, or -1 if the JVM cannot tell. */
+    static long allocatedBytes(Collection<? extends Thread> threads) {
+        if (!ALLOCATION_COUNTERS) {
+            return -1;
+        }
+        long total = 0;
+        for (Thread thread : threads) {
+            long allocated = ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(thread.getId());
+            if (allocated > 0) { // -1 once the thread has died
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    static long currentThreadAllocatedBytes() {
+        return allocatedBytes(Collections.singleton(Thread.currentThread()));
+    }
+
+    private static boolean enableAllocationCounters() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+        try {
+            if (threads.isThreadAllocatedMemorySupported() && !threads.isThreadAllocatedMemoryEnabled()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+            }
+            return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    private static boolean readsInput(String stage) {
+        return PARSE.equals(stage) || GROUP.equals(stage) || VALIDATE.equals(stage);
+    }
+
+    private static double seconds(long nanos) {
+        return Math.max(nanos, 1) / 1e9;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String orNull(long value) {
+        return value < 0 ? "null" : Long.toString(value);
+    }
+
+    private static String megabytes(long bytes) {
+        return bytes < 0 ? "n/a" : String.format(Locale.ROOT, "%.1f MB", bytes / 1048576.0);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
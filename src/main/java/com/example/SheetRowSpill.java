@@ -0,0 +1,82 @@
+package com.example;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Holds the rows of one output sheet in a temporary CSV until the workbook is written. Spilled and
+ * contiguous runs only know a sheet's row count at the very end, and the count goes in the sheet's
+ * first row, so the rows wait on disk instead of on the heap.
+ */
+class SheetRowSpill implements Closeable {
+
+    private final File file;
+    private final int columns;
+    private CSVPrinter printer;
+    private int rowCount;
+
+    SheetRowSpill(File file, int columns) throws IOException {
+        this.file = file;
+        this.columns = columns;
+        this.printer = new CSVPrinter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8), CSVFormat.DEFAULT);
+    }
+
+    void append(String... values) throws IOException {
+        printer.printRecord((Object[]) values);
+        rowCount++;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    interface RowConsumer {
+        void accept(String[] values) throws IOException;
+    }
+
+    /** Streams the spilled rows, in the order they were appended, into the sheet. */
+    void copyTo(StreamingWorkbookWriter.SheetWriter sheet) throws IOException {
+        forEachRow(sheet::writeRow);
+    }
+
+    /**
+     * Reads the spilled rows back in the order they were appended; no more rows can be appended
+     * after that. The values array is reused from row to row.
+     */
+    void forEachRow(RowConsumer consumer) throws IOException {
+        if (printer != null) {
+            printer.close();
+            printer = null;
+        }
+        String[] values = new String[columns];
+        try (CSVParser parser = new CSVParser(Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8), CSVFormat.DEFAULT)) {
+            for (CSVRecord record : parser) {
+                for (int i = 0; i < columns; i++) {
+                    values[i] = i < record.size() ? record.get(i) : "";
+                }
+                consumer.accept(values);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (printer != null) {
+            try {
+                printer.close();
+            } catch (IOException e) {
+                // deleting anyway
+            }
+            printer = null;
+        }
+        file.delete();
+    }
+}
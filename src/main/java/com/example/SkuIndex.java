@@ -0,0 +1,333 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Persistent set of SKUs / product codes that are already live, kept in a local memory-mapped file
+ * so runs can flag them without a database round trip. The file is an append-only log of
+ * [64-bit fingerprint][length][chars] records; on open the fingerprints are read back into an
+ * off-heap hash table (no key is rehashed or copied), and lookups probe that table and confirm a
+ * match against the mapped key, so a lookup costs a few memory reads.
+ * <p>
+ * The index grows with {@link #add} (the CLI's --record-skus, or "sku-index add") and can be
+ * rebuilt from a database export with {@link #rebuildFrom}. One process at a time may have the file
+ * open; methods are synchronized so concurrent runs in that process can share it.
+ */
+public final class SkuIndex implements Closeable {
+
+    private static final byte[] MAGIC = "SKUIDX01".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_BYTES = MAGIC.length;
+    private static final int GROWTH_BYTES = 16 * 1024 * 1024; // the file is extended, and remapped, in these steps
+    private static final int WIDE_KEY = Integer.MIN_VALUE; // length flag: chars stored as two bytes
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final long EMPTY = 0L;
+
+    // Database exports name the column one of these; otherwise the first column is used
+    private static final String[] EXPORT_COLUMNS = {"productcode", "product_code", "sku", "variant sku"};
+
+    private final File file;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private MappedByteBuffer data;
+    private int end; // first free byte of the log
+
+    private LongBuffer fingerprints;
+    private LongBuffer positions;
+    private int capacity;
+    private int size;
+    private int threshold;
+
+    private SkuIndex(File file, FileChannel channel, FileLock lock) {
+        this.file = file;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /** Opens the index file, creating an empty one if it does not exist yet. */
+    public static SkuIndex open(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory for the SKU index: " + parent);
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                throw new IOException("The SKU index " + file + " is in use by another process");
+            }
+            SkuIndex index = new SkuIndex(file, channel, lock);
+            index.load();
+            return index;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean contains(String sku) {
+        return fingerprints.get(findSlot(sku, fingerprintOf(sku))) != EMPTY;
+    }
+
+    /** Adds a SKU; returns false if it was already in the index. Empty SKUs are ignored. */
+    public synchronized boolean add(String sku) throws IOException {
+        if (sku.isEmpty()) {
+            return false;
+        }
+        long fingerprint = fingerprintOf(sku);
+        int slot = findSlot(sku, fingerprint);
+        if (fingerprints.get(slot) != EMPTY) {
+            return false;
+        }
+        int position = append(sku, fingerprint);
+        fingerprints.put(slot, fingerprint);
+        positions.put(slot, position);
+        if (++size > threshold) {
+            resize();
+        }
+        return true;
+    }
+
+    /**
+     * Adds the SKUs of one column of a CSV (a processed upload file or a database export); returns
+     * how many were new. With column null, the first of productcode, product_code, sku and
+     * Variant SKU that exists is used, or else the first column.
+     */
+    public synchronized long addFromCsv(File csvFile, String column) throws IOException {
+        try (MappedCsvReader reader = new MappedCsvReader(csvFile.toPath())) {
+            return addColumn(reader, findColumn(reader, column, csvFile));
+        }
+    }
+
+    /**
+     * Replaces the whole index with the SKUs of a database export (see addFromCsv); returns the new
+     * size. The export is read through once before the index is touched, so an export that cannot
+     * be read (a missing column, an unterminated quote) fails with the index as it was.
+     */
+    public synchronized int rebuildFrom(File exportCsv, String column) throws IOException {
+        try (MappedCsvReader reader = new MappedCsvReader(exportCsv.toPath())) {
+            reader.project(new int[]{findColumn(reader, column, exportCsv)});
+            String[] values = new String[1];
+            while (reader.next(values)) {
+                // only checking that the whole export parses
+            }
+        }
+        try (MappedCsvReader reader = new MappedCsvReader(exportCsv.toPath())) {
+            int columnIndex = findColumn(reader, column, exportCsv);
+            // Wipe the log; the zeroed records also mark the end for the next open
+            for (int i = HEADER_BYTES; i < end; i++) {
+                data.put(i, (byte) 0);
+            }
+            end = HEADER_BYTES;
+            allocateTable(1024);
+            size = 0;
+            addColumn(reader, columnIndex);
+        }
+        return size;
+    }
+
+    /** Writes outstanding changes to disk. */
+    public synchronized void flush() {
+        data.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            data.force();
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("SKU index " + file + " is too large");
+        }
+        map(Math.max(fileSize, GROWTH_BYTES));
+        if (fileSize == 0) {
+            data.put(MAGIC, 0, MAGIC.length);
+        } else {
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (data.get(i) != MAGIC[i]) {
+                    throw new IOException(file + " is not a SKU index");
+                }
+            }
+        }
+
+        allocateTable(1024);
+        int position = HEADER_BYTES;
+        // Records end at the first zero fingerprint (unused space, or a record cut short by a crash)
+        // or at one that runs past the end of the file as it was, which mapping has padded with zeros
+        while (position + 12 <= fileSize) {
+            long fingerprint = data.getLong(position);
+            long recordBytes = recordBytes(data.getInt(position + 8));
+            if (fingerprint == EMPTY || position + recordBytes > fileSize) {
+                break;
+            }
+            int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & (capacity - 1);
+            while (fingerprints.get(slot) != EMPTY) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            fingerprints.put(slot, fingerprint);
+            positions.put(slot, position);
+            if (++size > threshold) {
+                resize();
+            }
+            position += (int) recordBytes;
+        }
+        end = position;
+    }
+
+    // Record layout: fingerprint (8), length with WIDE_KEY flag (4), chars (1 or 2 bytes each)
+    private int append(String sku, long fingerprint) throws IOException {
+        int length = sku.length();
+        boolean wide = false;
+        for (int i = 0; i < length; i++) {
+            if (sku.charAt(i) >= 0x80) {
+                wide = true;
+                break;
+            }
+        }
+        int header = wide ? length | WIDE_KEY : length;
+        int recordBytes = (int) recordBytes(header);
+        // Keep 12 zero bytes after the last record so the next open sees where the log ends
+        if ((long) end + recordBytes + 12 > data.capacity()) {
+            long newSize = (long) data.capacity() + Math.max(GROWTH_BYTES, recordBytes);
+            if (newSize > Integer.MAX_VALUE) {
+                throw new IOException("SKU index " + file + " is full");
+            }
+            map(newSize);
+        }
+        int position = end;
+        data.putInt(position + 8, header);
+        for (int i = 0; i < length; i++) {
+            char c = sku.charAt(i);
+            if (wide) {
+                data.putChar(position + 12 + 2 * i, c);
+            } else {
+                data.put(position + 12 + i, (byte) c);
+            }
+        }
+        data.putLong(position, fingerprint); // last, so a torn record reads as the end of the log
+        end = position + recordBytes;
+        return position;
+    }
+
+    private static long recordBytes(int header) {
+        long length = header & ~WIDE_KEY;
+        return 12 + ((header & WIDE_KEY) != 0 ? 2 * length : length);
+    }
+
+    private void map(long bytes) throws IOException {
+        data = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        data.order(ByteOrder.LITTLE_ENDIAN); // fixed, so the file can move between machines
+    }
+
+    private int findSlot(String sku, long fingerprint) {
+        int mask = capacity - 1;
+        int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        long stored;
+        while ((stored = fingerprints.get(slot)) != EMPTY) {
+            if (stored == fingerprint && keyEquals((int) positions.get(slot), sku)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean keyEquals(int position, String sku) {
+        int header = data.getInt(position + 8);
+        boolean wide = (header & WIDE_KEY) != 0;
+        int length = header & ~WIDE_KEY;
+        if (length != sku.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = wide ? data.getChar(position + 12 + 2 * i) : (char) (data.get(position + 12 + i) & 0xff);
+            if (c != sku.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resize() {
+        LongBuffer oldFingerprints = fingerprints;
+        LongBuffer oldPositions = positions;
+        int oldCapacity = capacity;
+        allocateTable(capacity << 1);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            long fingerprint = oldFingerprints.get(i);
+            if (fingerprint != EMPTY) {
+                int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+                while (fingerprints.get(slot) != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                fingerprints.put(slot, fingerprint);
+                positions.put(slot, oldPositions.get(i));
+            }
+        }
+    }
+
+    private void allocateTable(int newCapacity) {
+        fingerprints = ByteBuffer.allocateDirect(newCapacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        positions = ByteBuffer.allocateDirect(newCapacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        capacity = newCapacity;
+        threshold = (int) (newCapacity * LOAD_FACTOR);
+    }
+
+    // Exports can be wide; only the SKU column is decoded
+    private long addColumn(MappedCsvReader reader, int columnIndex) throws IOException {
+        reader.project(new int[]{columnIndex});
+        String[] values = new String[1];
+        long added = 0;
+        while (reader.next(values)) {
+            if (add(values[0].trim())) {
+                added++;
+            }
+        }
+        data.force();
+        return added;
+    }
+
+    private static int findColumn(MappedCsvReader reader, String column, File csvFile) throws IOException {
+        int[] columns = reader.findColumns(column != null ? Arrays.asList(column) : Arrays.asList(EXPORT_COLUMNS));
+        for (int index : columns) {
+            if (index >= 0) {
+                return index;
+            }
+        }
+        if (column != null) {
+            throw new IOException("Column '" + column + "' not found in " + csvFile.getName());
+        }
+        return 0;
+    }
+
+    private static long fingerprintOf(String sku) {
+        long fingerprint = FingerprintIndex.fingerprint(sku);
+        return fingerprint == EMPTY ? 1L : fingerprint; // 0 marks an empty slot and the end of the log
+    }
+}
@@ -0,0 +1,221 @@
+package com.example;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-heap set of SKUs (or any other codes) for run-wide duplicate detection. The open-addressing
+ * table holds a 64-bit fingerprint and the key's address per slot, both in direct buffers; the keys
+ * themselves are copied into direct arena chunks (one byte per char for ASCII keys), so the heap
+ * holds neither the strings nor any per-entry objects. Fingerprints are only a filter: a match is
+ * confirmed against the stored key, so two SKUs are never confused however their hashes collide.
+ * <p>
+ * A ten-character SKU costs 14 bytes of arena plus 27 to 54 bytes of table, depending on how
+ * full the table is, so ten million SKUs fit in well under 1 GB. The arena starts with a 64 KB
+ * chunk and doubles the next chunk up to 16 MB, so a small file only takes a small amount of
+ * direct memory. Direct memory is capped by -XX:MaxDirectMemorySize, which defaults to the heap
+ * size; close() returns it right away, where the JVM would only return it once the registry is
+ * garbage collected. Not thread-safe.
+ */
+final class SkuRegistry implements AutoCloseable {
+
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int MAX_CAPACITY = 1 << 27; // 8-byte slots, so each table buffer stays under 2 GB
+    private static final float MAX_CAPACITY_LOAD_FACTOR = 0.9f;
+    private static final int FIRST_ARENA_CHUNK_BYTES = 64 * 1024;
+    private static final int MAX_ARENA_CHUNK_BYTES = 16 * 1024 * 1024;
+    private static final int WIDE_KEY = Integer.MIN_VALUE; // length header flag: chars stored as two bytes
+    private static final long EMPTY = 0L;
+
+    private ByteBuffer fingerprintBytes;
+    private ByteBuffer addressBytes;
+    private LongBuffer fingerprints; // views of the two buffers above
+    private LongBuffer addresses;
+    private int capacity;
+    private int size;
+    private int threshold;
+    private final List<ByteBuffer> arena = new ArrayList<>();
+
+    SkuRegistry() {
+        allocate(1024);
+    }
+
+    /** Adds the key; returns false if it was already present. */
+    boolean add(String key) {
+        long fingerprint = fingerprintOf(key);
+        int slot = findSlot(key, fingerprint);
+        if (fingerprints.get(slot) != EMPTY) {
+            return false;
+        }
+        fingerprints.put(slot, fingerprint);
+        addresses.put(slot, store(key));
+        if (++size > threshold) {
+            resize();
+        }
+        return true;
+    }
+
+    boolean contains(String key) {
+        return fingerprints.get(findSlot(key, fingerprintOf(key))) != EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Linear probing: returns the slot holding the key, or the empty slot where it would go
+    private int findSlot(String key, long fingerprint) {
+        int mask = capacity - 1;
+        int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        long stored;
+        while ((stored = fingerprints.get(slot)) != EMPTY) {
+            if (stored == fingerprint && keyEquals(addresses.get(slot), key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Copies the key into the arena and returns its address: chunk index in the high int, offset in the low
+    private long store(String key) {
+        int length = key.length();
+        boolean wide = false;
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) >= 0x80) {
+                wide = true;
+                break;
+            }
+        }
+        int bytes = 4 + (wide ? length * 2 : length);
+        ByteBuffer chunk = arena.isEmpty() ? null : arena.get(arena.size() - 1);
+        if (chunk == null || chunk.remaining() < bytes) {
+            int chunkBytes = chunk == null ? FIRST_ARENA_CHUNK_BYTES : Math.min(MAX_ARENA_CHUNK_BYTES, chunk.capacity() * 2);
+            chunk = ByteBuffer.allocateDirect(Math.max(chunkBytes, bytes)).order(ByteOrder.nativeOrder());
+            arena.add(chunk);
+        }
+        int offset = chunk.position();
+        chunk.putInt(wide ? length | WIDE_KEY : length);
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if (wide) {
+                chunk.putChar(c);
+            } else {
+                chunk.put((byte) c);
+            }
+        }
+        return ((long) (arena.size() - 1) << 32) | offset;
+    }
+
+    private boolean keyEquals(long address, String key) {
+        ByteBuffer chunk = arena.get((int) (address >>> 32));
+        int position = (int) address;
+        int header = chunk.getInt(position);
+        boolean wide = (header & WIDE_KEY) != 0;
+        int length = header & ~WIDE_KEY;
+        if (length != key.length()) {
+            return false;
+        }
+        position += 4;
+        for (int i = 0; i < length; i++) {
+            char c = wide ? chunk.getChar(position + 2 * i) : (char) (chunk.get(position + i) & 0xff);
+            if (c != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Fingerprints are kept with the table, so growing it never reads the arena
+    private void resize() {
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("SKU registry is full at " + size + " entries");
+        }
+        ByteBuffer oldFingerprintBytes = fingerprintBytes;
+        ByteBuffer oldAddressBytes = addressBytes;
+        LongBuffer oldFingerprints = fingerprints;
+        LongBuffer oldAddresses = addresses;
+        int oldCapacity = capacity;
+        allocate(capacity << 1);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            long fingerprint = oldFingerprints.get(i);
+            if (fingerprint != EMPTY) {
+                int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+                while (fingerprints.get(slot) != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                fingerprints.put(slot, fingerprint);
+                addresses.put(slot, oldAddresses.get(i));
+            }
+        }
+        free(oldFingerprintBytes);
+        free(oldAddressBytes);
+    }
+
+    private void allocate(int newCapacity) {
+        fingerprintBytes = ByteBuffer.allocateDirect(newCapacity * 8).order(ByteOrder.nativeOrder());
+        addressBytes = ByteBuffer.allocateDirect(newCapacity * 8).order(ByteOrder.nativeOrder());
+        fingerprints = fingerprintBytes.asLongBuffer();
+        addresses = addressBytes.asLongBuffer();
+        capacity = newCapacity;
+        threshold = (int) (newCapacity * (newCapacity == MAX_CAPACITY ? MAX_CAPACITY_LOAD_FACTOR : LOAD_FACTOR));
+    }
+
+    /** Returns the table and the arena to the JVM. The registry cannot be used afterwards. */
+    @Override
+    public void close() {
+        if (fingerprints == null) {
+            return;
+        }
+        free(fingerprintBytes);
+        free(addressBytes);
+        for (ByteBuffer chunk : arena) {
+            free(chunk);
+        }
+        arena.clear();
+        fingerprintBytes = null;
+        addressBytes = null;
+        fingerprints = null;
+        addresses = null;
+    }
+
+    // Releases a direct buffer now instead of when it is garbage collected: through Unsafe.invokeCleaner
+    // on Java 9 and later, through the buffer's own cleaner on Java 8. If neither can be reached, the
+    // buffer is only dropped and the collector returns it as before.
+    private static void free(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (NoSuchMethodException e) {
+            // Java 8: fall through to the buffer's cleaner
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return;
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                Method clean = cleaner.getClass().getMethod("clean");
+                clean.setAccessible(true);
+                clean.invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // left to the garbage collector
+        }
+    }
+
+    private static long fingerprintOf(String key) {
+        long fingerprint = FingerprintIndex.fingerprint(key);
+        return fingerprint == EMPTY ? 1L : fingerprint; // 0 marks an empty slot
+    }
+}
@@ -0,0 +1,80 @@
+package com.example;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the processor's output workbook in a single pass using POI's streaming (SXSSF) API.
+ * Only the last {@code rowWindow} rows of each sheet are kept on the heap; older rows are
+ * flushed to (compressed) temp files and the final .xlsx is assembled once in {@link #finish()}.
+ */
+class StreamingWorkbookWriter implements Closeable {
+
+    static final int DEFAULT_ROW_WINDOW = 100;
+
+    private final String outputFilePath;
+    private final SXSSFWorkbook workbook;
+
+    StreamingWorkbookWriter(String outputFilePath) {
+        this(outputFilePath, DEFAULT_ROW_WINDOW);
+    }
+
+    StreamingWorkbookWriter(String outputFilePath, int rowWindow) {
+        this.outputFilePath = outputFilePath;
+        this.workbook = new SXSSFWorkbook(rowWindow);
+        this.workbook.setCompressTempFiles(true);
+    }
+
+    /**
+     * Creates the next sheet with the usual layout: a count line in row 0 and the column headers
+     * in row 1. Data rows appended through the returned writer start at row 2.
+     */
+    SheetWriter createSheet(String sheetName, String countText, String[] headers) {
+        SXSSFSheet sheet = workbook.createSheet(sheetName);
+        sheet.createRow(0).createCell(0).setCellValue(countText);
+        SheetWriter writer = new SheetWriter(sheet, 1);
+        writer.writeRow(headers);
+        return writer;
+    }
+
+    /**
+     * Writes the assembled workbook to the output path. Call once, after all rows were appended.
+     */
+    void finish() throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(outputFilePath)) {
+            workbook.write(outputStream);
+        } catch (FileNotFoundException e) {
+            // Handle permission denied error specifically
+            throw new IOException("Permission denied to write to: " + outputFilePath + ". Please ensure the file is not open in another application or adjust your file permissions.", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        workbook.dispose(); // delete the temp files backing the flushed rows
+        workbook.close();
+    }
+
+    static class SheetWriter {
+        private final SXSSFSheet sheet;
+        private int nextRow;
+
+        private SheetWriter(SXSSFSheet sheet, int firstRow) {
+            this.sheet = sheet;
+            this.nextRow = firstRow;
+        }
+
+        void writeRow(String... values) {
+            Row row = sheet.createRow(nextRow++);
+            for (int i = 0; i < values.length; i++) {
+                row.createCell(i).setCellValue(values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.example;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes synthetic catalogs for load and scale tests, since real vendor files cannot be shared:
+ * Shopify product exports (the columns of a real export, so every required header is there) and
+ * upload templates in the {@link VariationRecord} layout. The same settings and seed always give
+ * the same file, so runs can be compared. Used by the CLI's generate command and the benchmarks.
+ * <p>
+ * A product export has a meta product row and its variant rows per handle, with optional extra
+ * image rows in between, like a Shopify export. The error rates are per row (duplicate SKUs) or
+ * per handle (invalid options), and each broken row carries one of the errors the validator
+ * reports, so the share of rows on the error sheets follows them.
+ */
+public class SyntheticCatalogGenerator {
+
+    private static final String[] SHOPIFY_HEADERS = {"Handle", "Title", "Body (HTML)", "Vendor", "Product Category", "Type", "Tags",
+            "Published", "Option1 Name", "Option1 Value", "Option1 Linked To", "Option2 Name", "Option2 Value", "Option2 Linked To",
+            "Option3 Name", "Option3 Value", "Option3 Linked To", "Variant SKU", "Variant Grams", "Variant Inventory Tracker",
+            "Variant Inventory Qty", "Variant Inventory Policy", "Variant Fulfillment Service", "Variant Price",
+            "Variant Compare At Price", "Variant Requires Shipping", "Variant Taxable", "Variant Barcode", "Image Src",
+            "Image Position", "Image Alt Text", "Gift Card", "SEO Title", "SEO Description", "Variant Image",
+            "Variant Weight Unit", "Status"};
+    // Positions in SHOPIFY_HEADERS
+    private static final int HANDLE = 0;
+    private static final int TITLE = 1;
+    private static final int BODY_HTML = 2;
+    private static final int VENDOR = 3;
+    private static final int PRODUCT_CATEGORY = 4;
+    private static final int TYPE = 5;
+    private static final int TAGS = 6;
+    private static final int PUBLISHED = 7;
+    private static final int OPTION1_NAME = 8;
+    private static final int OPTION1_VALUE = 9;
+    private static final int OPTION2_NAME = 11;
+    private static final int OPTION2_VALUE = 12;
+    private static final int VARIANT_SKU = 17;
+    private static final int VARIANT_GRAMS = 18;
+    private static final int INVENTORY_TRACKER = 19;
+    private static final int INVENTORY_QTY = 20;
+    private static final int INVENTORY_POLICY = 21;
+    private static final int FULFILLMENT_SERVICE = 22;
+    private static final int PRICE = 23;
+    private static final int COMPARE_AT_PRICE = 24;
+    private static final int REQUIRES_SHIPPING = 25;
+    private static final int TAXABLE = 26;
+    private static final int IMAGE_SRC = 28;
+    private static final int IMAGE_POSITION = 29;
+    private static final int GIFT_CARD = 31;
+    private static final int WEIGHT_UNIT = 35;
+    private static final int STATUS = 36;
+
+    private static final String[] UPLOAD_HEADERS = {"variation_name", "option1", "option2", "product_code"};
+
+    private static final String[] COLORS = {"Black", "White", "Navy", "Red", "Tan", "Grey", "Olive", "Pink"};
+    private static final String[] CATEGORIES = {"Apparel & Accessories > Shoes", "Apparel & Accessories > Clothing",
+            "Apparel & Accessories > Handbag & Wallet Accessories > Keychains"};
+    // Option name pairs that break one meta product rule each
+    private static final String[][] INVALID_OPTION_NAMES = {{"Material", "Size"}, {"Color", "Colour"}, {"Size", "Size"},
+            {"Color", "Title"}, {"", ""}};
+    private static final String IMAGE_URL = "https://cdn.shopify.com/s/files/1/0599/4731/9470/files/";
+
+    private long seed = 1;
+    private int rows = 10_000;
+    private int handles;
+    private double duplicateSkuRate = 0.01;
+    private double invalidOptionRate = 0.01;
+    private double imageRowRatio = 0.25;
+    private int bodyBytes = 512;
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /** Variant rows to write (meta products included, extra image rows not). */
+    public int getRows() {
+        return rows;
+    }
+
+    public void setRows(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Rows cannot be negative, got " + rows);
+        }
+        this.rows = rows;
+    }
+
+    /**
+     * Distinct handles the rows are spread over (product exports) or variation_names they are
+     * grouped under (product upload templates). 0, the default, means one per four rows.
+     */
+    public int getHandles() {
+        return handles > 0 ? Math.min(handles, Math.max(rows, 1)) : Math.max(rows / 4, 1);
+    }
+
+    public void setHandles(int handles) {
+        if (handles < 0) {
+            throw new IllegalArgumentException("Handles cannot be negative, got " + handles);
+        }
+        this.handles = handles;
+    }
+
+    /** Share of rows whose SKU (product_code in templates) repeats one written earlier. */
+    public double getDuplicateSkuRate() {
+        return duplicateSkuRate;
+    }
+
+    public void setDuplicateSkuRate(double duplicateSkuRate) {
+        this.duplicateSkuRate = checkRate(duplicateSkuRate, "Duplicate SKU rate");
+    }
+
+    /**
+     * Share of handles whose meta product breaks an option rule (invalid, clashing or missing
+     * option names); in templates, share of rows with a missing option1.
+     */
+    public double getInvalidOptionRate() {
+        return invalidOptionRate;
+    }
+
+    public void setInvalidOptionRate(double invalidOptionRate) {
+        this.invalidOptionRate = checkRate(invalidOptionRate, "Invalid option rate");
+    }
+
+    /** Share of variant rows followed by an extra image row (no options, no SKU), which the validator skips. */
+    public double getImageRowRatio() {
+        return imageRowRatio;
+    }
+
+    public void setImageRowRatio(double imageRowRatio) {
+        this.imageRowRatio = checkRate(imageRowRatio, "Image row ratio");
+    }
+
+    /** Approximate size of each meta product's Body (HTML): multi-line, with commas and quotes. */
+    public int getBodyBytes() {
+        return bodyBytes;
+    }
+
+    public void setBodyBytes(int bodyBytes) {
+        if (bodyBytes < 0) {
+            throw new IllegalArgumentException("Body size cannot be negative, got " + bodyBytes);
+        }
+        this.bodyBytes = bodyBytes;
+    }
+
+    /** Writes a Shopify product export; returns the number of records, image rows included. */
+    public long writeProductCsv(File file) throws IOException {
+        Random random = new Random(seed);
+        int handleCount = getHandles();
+        String body = body(random);
+        long written = 0;
+        try (CSVPrinter printer = open(file, SHOPIFY_HEADERS)) {
+            String[] row = new String[SHOPIFY_HEADERS.length];
+            int rowIndex = 0;
+            for (int product = 0; product < handleCount; product++) {
+                // Spread the rows evenly; the first handles take the remainder
+                int variants = rows / handleCount + (product < rows % handleCount ? 1 : 0);
+                String handle = "product-" + product;
+                String[] optionNames = random.nextDouble() < invalidOptionRate
+                        ? INVALID_OPTION_NAMES[random.nextInt(INVALID_OPTION_NAMES.length)]
+                        : new String[]{"Color", "Size"};
+                for (int variant = 0; variant < variants; variant++, rowIndex++) {
+                    Arrays.fill(row, "");
+                    row[HANDLE] = handle;
+                    row[OPTION1_VALUE] = COLORS[variant % COLORS.length];
+                    row[OPTION2_VALUE] = String.valueOf(30 + variant / COLORS.length);
+                    row[VARIANT_SKU] = random.nextDouble() < duplicateSkuRate && rowIndex > 0
+                            ? sku(random.nextInt(rowIndex))
+                            : sku(rowIndex);
+                    row[VARIANT_GRAMS] = "0";
+                    row[INVENTORY_TRACKER] = "shopify";
+                    row[INVENTORY_QTY] = String.valueOf(random.nextInt(20));
+                    row[INVENTORY_POLICY] = "deny";
+                    row[FULFILLMENT_SERVICE] = "manual";
+                    row[PRICE] = String.valueOf(199 + 100 * (product % 8));
+                    row[COMPARE_AT_PRICE] = row[PRICE];
+                    row[REQUIRES_SHIPPING] = "TRUE";
+                    row[TAXABLE] = "TRUE";
+                    row[IMAGE_SRC] = IMAGE_URL + handle + "_" + variant + ".jpg";
+                    row[IMAGE_POSITION] = String.valueOf(variant + 1);
+                    row[WEIGHT_UNIT] = "g";
+                    if (variant == 0) {
+                        row[TITLE] = "PRODUCT " + product;
+                        row[BODY_HTML] = body;
+                        row[VENDOR] = "EASY SOFT PH";
+                        row[PRODUCT_CATEGORY] = CATEGORIES[product % CATEGORIES.length];
+                        row[TYPE] = "Kids";
+                        row[TAGS] = "Boys, Kids, Loafers";
+                        row[PUBLISHED] = "TRUE";
+                        row[OPTION1_NAME] = optionNames[0];
+                        row[OPTION2_NAME] = optionNames[1];
+                        row[GIFT_CARD] = "FALSE";
+                        row[STATUS] = "active";
+                    }
+                    printer.printRecord((Object[]) row);
+                    written++;
+
+                    if (random.nextDouble() < imageRowRatio) {
+                        writeImageRow(printer, row, handle, variants + variant + 1);
+                        written++;
+                    }
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Writes a product upload template: rows rows grouped under getHandles() variation_names, the
+     * name on each group's first row. Returns the number of records.
+     */
+    public long writeProductUploadCsv(File file) throws IOException {
+        Random random = new Random(seed);
+        int groupCount = getHandles();
+        try (CSVPrinter printer = open(file, UPLOAD_HEADERS)) {
+            int row = 0;
+            for (int group = 0; group < groupCount; group++) {
+                int size = rows / groupCount + (group < rows % groupCount ? 1 : 0);
+                for (int i = 0; i < size; i++, row++) {
+                    String option1 = random.nextDouble() < invalidOptionRate ? "" : COLORS[i % COLORS.length];
+                    printer.printRecord(i == 0 ? "V" + group : "", option1, String.valueOf(30 + i), productCode(random, row));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /** Writes a variation upload template, one variation_name per row. Returns the number of records. */
+    public long writeVariationUploadCsv(File file) throws IOException {
+        Random random = new Random(seed);
+        try (CSVPrinter printer = open(file, UPLOAD_HEADERS)) {
+            for (int row = 0; row < rows; row++) {
+                String option1 = COLORS[row % COLORS.length];
+                String option2 = String.valueOf(30 + row % 10);
+                if (random.nextDouble() < invalidOptionRate) {
+                    // Either no option at all, or option2 without option1
+                    option1 = "";
+                    option2 = random.nextBoolean() ? "" : option2;
+                }
+                printer.printRecord("V" + row, option1, option2, productCode(random, row));
+            }
+        }
+        return rows;
+    }
+
+    private void writeImageRow(CSVPrinter printer, String[] row, String handle, int position) throws IOException {
+        Arrays.fill(row, "");
+        row[HANDLE] = handle;
+        row[IMAGE_SRC] = IMAGE_URL + handle + "_extra_" + position + ".jpg";
+        row[IMAGE_POSITION] = String.valueOf(position);
+        printer.printRecord((Object[]) row);
+    }
+
+    private String productCode(Random random, int row) {
+        return "P" + (random.nextDouble() < duplicateSkuRate && row > 0 ? random.nextInt(row) : row);
+    }
+
+    private static String sku(int row) {
+        return String.format("%08dY%04d", row / 16, row % 16);
+    }
+
+    // Paragraphs like the ones Shopify stores: line breaks, commas and quotes, so the body is a quoted field
+    private String body(Random random) {
+        StringBuilder body = new StringBuilder(bodyBytes + 64);
+        while (body.length() < bodyBytes) {
+            body.append("<p><strong>Feature<br></strong>Vicrotech material, \"memory foam\" insole #")
+                    .append(random.nextInt(1000))
+                    .append("</p>\n");
+        }
+        body.setLength(bodyBytes);
+        return body.toString();
+    }
+
+    private static CSVPrinter open(File file, String[] headers) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            // Shopify exports end records with LF
+            return new CSVPrinter(writer, CSVFormat.DEFAULT.withRecordSeparator("\n").withHeader(headers));
+        } catch (IOException | RuntimeException e) {
+            writer.close();
+            throw e;
+        }
+    }
+
+    private static double checkRate(double rate, String name) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException(name + " must be between 0 and 1, got " + rate);
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,527 @@
+package com.example;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Checks product upload and variation upload templates and writes the cleaned upload CSVs. Shared
+ * by the JavaFX app and the CLI; messages go to a {@link ProcessingReporter}.
+ */
+public class UploadTemplateProcessor {
+
+    static final String PRODUCT_UPLOAD_OUTPUT = "product_upload_processed.csv";
+    static final String PRODUCT_UPLOAD_INVALID_OUTPUT = "invalid.csv";
+    static final String VARIATION_UPLOAD_OUTPUT = "variation_upload_processed.csv";
+
+    // Only these columns will be exported
+    private static final List<String> UPLOAD_HEADERS = Arrays.asList("variation_name", "option1", "option2", "product_code");
+    // Positions in UPLOAD_HEADERS, used for the projected rows of a product upload
+    private static final int VARIATION_NAME = 0;
+    private static final int OPTION1 = 1;
+    private static final int OPTION2 = 2;
+    private static final int PRODUCT_CODE = 3;
+
+    private final ProcessingOptions options;
+
+    public UploadTemplateProcessor() {
+        this(new ProcessingOptions());
+    }
+
+    public UploadTemplateProcessor(ProcessingOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Product upload: groups rows under each variation_name and writes the valid groups to
+     * product_upload_processed.csv and the invalid ones to invalid.csv in outputDir. Files at or
+     * above {@link ProcessingOptions#getTwoPassUploadThresholdBytes()} are read twice instead of
+     * being held in memory; both ways produce the same files.
+     */
+    public UploadResult processProductUpload(File csvFile, File outputDir, ProcessingReporter reporter) throws IOException {
+        if (csvFile.length() >= options.getTwoPassUploadThresholdBytes()) {
+            return processProductUploadTwoPass(csvFile, outputDir, reporter);
+        }
+        UploadResult result = new UploadResult();
+
+        try (MappedCsvReader reader = openTemplate(csvFile)) {
+            if (!hasRequiredHeaders(reader, reporter)) {
+                result.headersMissing = true;
+                return result;
+            }
+
+            // 1. Group records by variation_name, keeping only the exported columns of each row
+            List<List<String[]>> allGroups = new ArrayList<>();
+            List<String> groupNames = new ArrayList<>();
+            List<String[]> currentGroup = new ArrayList<>();
+            String[] values = new String[UPLOAD_HEADERS.size()];
+            while (reader.next(values)) {
+                result.rowsRead++;
+                String[] row = readUploadRow(values);
+                if (row == null) continue; // blank record
+
+                String variationName = row[VARIATION_NAME].trim();
+                if (!variationName.isEmpty()) {
+                    if (!currentGroup.isEmpty()) {
+                        allGroups.add(new ArrayList<>(currentGroup));
+                        currentGroup.clear();
+                    }
+                    groupNames.add(variationName);
+                }
+                currentGroup.add(row);
+            }
+            if (!currentGroup.isEmpty()) {
+                allGroups.add(currentGroup);
+            }
+
+            // 2. Check for duplicate variation_name groups
+            Map<String, List<Integer>> variationNameToGroups = new HashMap<>();
+            for (int i = 0; i < groupNames.size(); i++) {
+                String name = groupNames.get(i);
+                variationNameToGroups.computeIfAbsent(name, k -> new ArrayList<>()).add(i);
+            }
+
+            // 3. Map product_code to groups
+            Map<String, List<Integer>> productCodeToGroups = new HashMap<>();
+            for (int i = 0; i < allGroups.size(); i++) {
+                for (String[] row : allGroups.get(i)) {
+                    String productCode = row[PRODUCT_CODE].trim();
+                    if (!productCode.isEmpty()) {
+                        productCodeToGroups.computeIfAbsent(productCode, k -> new ArrayList<>()).add(i);
+                    }
+                }
+            }
+
+            // 4. Identify invalid groups (duplicate variation_name, duplicate product_code, missing fields)
+            Set<Integer> invalidGroupIndexes = new HashSet<>();
+            // a) Duplicate variation_name
+            for (Map.Entry<String, List<Integer>> entry : variationNameToGroups.entrySet()) {
+                if (entry.getValue().size() > 1) {
+                    invalidGroupIndexes.addAll(entry.getValue());
+                }
+            }
+            // b) Duplicate product_code across groups
+            for (Map.Entry<String, List<Integer>> entry : productCodeToGroups.entrySet()) {
+                if (entry.getValue().size() > 1) {
+                    invalidGroupIndexes.addAll(entry.getValue());
+                }
+            }
+            // c) Validation for each group (option1 required for header, product_code required/unique in group)
+            SkuIndex knownSkus = options.getSkuIndex();
+            Set<String> knownProductCodes = new LinkedHashSet<>();
+            for (int i = 0; i < allGroups.size(); i++) {
+                List<String[]> group = allGroups.get(i);
+                Set<String> localProductCodes = new HashSet<>();
+                for (int j = 0; j < group.size(); j++) {
+                    String[] row = group.get(j);
+                    String productCode = row[PRODUCT_CODE].trim();
+                    String option1 = row[OPTION1].trim();
+
+                    if (j == 0 && option1.isEmpty()) {
+                        invalidGroupIndexes.add(i);
+                    }
+                    if (productCode.isEmpty() || !localProductCodes.add(productCode)) {
+                        invalidGroupIndexes.add(i);
+                    }
+                    // d) product_code uploaded by an earlier run
+                    if (knownSkus != null && !productCode.isEmpty() && knownSkus.contains(productCode)) {
+                        invalidGroupIndexes.add(i);
+                        knownProductCodes.add(productCode);
+                    }
+                }
+            }
+            reportKnownProductCodes(knownProductCodes, reporter);
+
+            // 5. Separate valid/invalid groups
+            List<List<String[]>> validGroups = new ArrayList<>();
+            List<List<String[]>> invalidGroups = new ArrayList<>();
+            for (int i = 0; i < allGroups.size(); i++) {
+                if (invalidGroupIndexes.contains(i)) {
+                    invalidGroups.add(allGroups.get(i));
+                } else {
+                    validGroups.add(allGroups.get(i));
+                }
+            }
+
+            // 6. Write valid groups
+            if (!validGroups.isEmpty()) {
+                File outFile = new File(outputDir, PRODUCT_UPLOAD_OUTPUT);
+                result.validRows = writeGroups(outFile, validGroups);
+                result.processedFile = outFile;
+                reporter.info("Processed file Temporary saved as: " + outFile.getAbsolutePath());
+            } else {
+                reporter.info("No valid product groups to write.");
+            }
+
+            // 7. Write invalid groups
+            if (!invalidGroups.isEmpty()) {
+                File invalidFile = new File(outputDir, PRODUCT_UPLOAD_INVALID_OUTPUT);
+                result.invalidRows = writeGroups(invalidFile, invalidGroups);
+                result.invalidFile = invalidFile;
+                reporter.info("Invalid records written to: " + invalidFile.getAbsolutePath());
+            }
+        }
+        recordProductCodes(result, "product_code", reporter);
+        return result;
+    }
+
+    /**
+     * Product upload for files too big to hold. Pass one streams the file and keeps, per key, only a
+     * 64-bit fingerprint and the first group that used it, plus one bit per group for "invalid".
+     * Pass two streams the file again and routes each group's rows to the processed or invalid CSV.
+     * Memory is about 20 bytes per distinct key, independent of row width and file size.
+     */
+    UploadResult processProductUploadTwoPass(File csvFile, File outputDir, ProcessingReporter reporter) throws IOException {
+        UploadResult result = new UploadResult();
+        BitSet invalidGroupIndexes = new BitSet();
+
+        // Pass 1: same grouping and rules as the in-memory path, on fingerprints
+        String[] values = new String[UPLOAD_HEADERS.size()];
+        try (MappedCsvReader reader = openTemplate(csvFile)) {
+            if (!hasRequiredHeaders(reader, reporter)) {
+                result.headersMissing = true;
+                return result;
+            }
+
+            FingerprintIndex variationNameToGroup = new FingerprintIndex();
+            FingerprintIndex productCodeToGroup = new FingerprintIndex();
+            Set<String> localProductCodes = new HashSet<>(); // only the current group's codes
+            SkuIndex knownSkus = options.getSkuIndex();
+            Set<String> knownProductCodes = new LinkedHashSet<>();
+            int group = 0;
+            int rowsInGroup = 0;
+            int groupNameCount = 0;
+            while (reader.next(values)) {
+                result.rowsRead++;
+                String[] row = readUploadRow(values);
+                if (row == null) continue; // blank record
+
+                String variationName = row[VARIATION_NAME].trim();
+                if (!variationName.isEmpty()) {
+                    if (rowsInGroup > 0) {
+                        group++;
+                        rowsInGroup = 0;
+                        localProductCodes.clear();
+                    }
+                    // a) Duplicate variation_name; numbered by name, exactly like groupNames in the in-memory path
+                    int firstGroup = variationNameToGroup.putIfAbsent(FingerprintIndex.fingerprint(variationName), groupNameCount);
+                    if (firstGroup >= 0) {
+                        invalidGroupIndexes.set(firstGroup);
+                        invalidGroupIndexes.set(groupNameCount);
+                    }
+                    groupNameCount++;
+                }
+
+                String productCode = row[PRODUCT_CODE].trim();
+                // b) Duplicate product_code across groups (or repeated within this one)
+                if (!productCode.isEmpty()) {
+                    int firstGroup = productCodeToGroup.putIfAbsent(FingerprintIndex.fingerprint(productCode), group);
+                    if (firstGroup >= 0) {
+                        invalidGroupIndexes.set(firstGroup);
+                        invalidGroupIndexes.set(group);
+                    }
+                }
+                // c) option1 required for the group's first row, product_code required/unique in group
+                if (rowsInGroup == 0 && row[OPTION1].trim().isEmpty()) {
+                    invalidGroupIndexes.set(group);
+                }
+                if (productCode.isEmpty() || !localProductCodes.add(productCode)) {
+                    invalidGroupIndexes.set(group);
+                }
+                // d) product_code uploaded by an earlier run
+                if (knownSkus != null && !productCode.isEmpty() && knownSkus.contains(productCode)) {
+                    invalidGroupIndexes.set(group);
+                    knownProductCodes.add(productCode);
+                }
+                rowsInGroup++;
+            }
+            reportKnownProductCodes(knownProductCodes, reporter);
+        }
+
+        // Pass 2: regroup the same way and route each row by its group's verdict
+        File outFile = new File(outputDir, PRODUCT_UPLOAD_OUTPUT);
+        File invalidFile = new File(outputDir, PRODUCT_UPLOAD_INVALID_OUTPUT);
+        CSVPrinter validPrinter = null;
+        CSVPrinter invalidPrinter = null;
+        try (MappedCsvReader reader = openTemplate(csvFile)) {
+            int group = 0;
+            int rowsInGroup = 0;
+            while (reader.next(values)) {
+                String[] row = readUploadRow(values);
+                if (row == null) continue;
+
+                if (!row[VARIATION_NAME].trim().isEmpty() && rowsInGroup > 0) {
+                    group++;
+                    rowsInGroup = 0;
+                }
+                rowsInGroup++;
+
+                if (invalidGroupIndexes.get(group)) {
+                    if (invalidPrinter == null) {
+                        invalidPrinter = openUploadPrinter(invalidFile);
+                    }
+                    invalidPrinter.printRecord((Object[]) row);
+                    result.invalidRows++;
+                } else {
+                    if (validPrinter == null) {
+                        validPrinter = openUploadPrinter(outFile);
+                    }
+                    validPrinter.printRecord((Object[]) row);
+                    result.validRows++;
+                }
+            }
+        } finally {
+            if (validPrinter != null) {
+                validPrinter.close();
+            }
+            if (invalidPrinter != null) {
+                invalidPrinter.close();
+            }
+        }
+
+        if (validPrinter != null) {
+            result.processedFile = outFile;
+            reporter.info("Processed file Temporary saved as: " + outFile.getAbsolutePath());
+        } else {
+            reporter.info("No valid product groups to write.");
+        }
+        if (invalidPrinter != null) {
+            result.invalidFile = invalidFile;
+            reporter.info("Invalid records written to: " + invalidFile.getAbsolutePath());
+        }
+        recordProductCodes(result, "product_code", reporter);
+        return result;
+    }
+
+    /**
+     * Variation upload: one row per variation_name. Rows that break the option rules or repeat a
+     * variation_name or product_code are reported as they are read; the rest are written straight
+     * to variation_upload_processed.csv. Only the variation names and product codes seen so far are
+     * kept, off-heap, so memory use follows the number of distinct keys rather than the file size.
+     */
+    public UploadResult processVariationUpload(File csvFile, File outputDir, ProcessingReporter reporter) throws IOException {
+        UploadResult result = new UploadResult();
+        Set<String> duplicateVariationNames = new HashSet<>();
+        Set<String> duplicateProductCodes = new HashSet<>();
+        SkuIndex knownSkus = options.getSkuIndex();
+        Set<String> knownProductCodes = new LinkedHashSet<>();
+
+        File outFile = new File(outputDir, VARIATION_UPLOAD_OUTPUT);
+        // Rows go to a temp file next to the output, opened on the first valid row and moved into place at
+        // the end, so a run that fails half way (or finds nothing valid) leaves the previous output alone
+        File tempFile = null;
+        CSVPrinter printer = null;
+        // Off-heap, so catalogs with tens of millions of variations don't fill the heap with keys
+        try (MappedCsvReader reader = openTemplate(csvFile);
+             SkuRegistry variationNames = new SkuRegistry();
+             SkuRegistry productCodes = new SkuRegistry()) {
+            if (!hasRequiredHeaders(reader, reporter)) {
+                result.headersMissing = true;
+                return result;
+            }
+
+            int rowNum = 1 + 1; // header + 1-based indexing
+            String[] values = new String[UPLOAD_HEADERS.size()];
+            while (reader.next(values)) {
+                result.rowsRead++;
+                String variationName = values[VARIATION_NAME].trim();
+                String option1 = values[OPTION1].trim();
+                String option2 = values[OPTION2].trim();
+                String productCode = values[PRODUCT_CODE].trim();
+
+                if (variationName.isEmpty()) {
+                    rowNum++;
+                    continue;
+                }
+
+                if (option1.isEmpty() && option2.isEmpty()) {
+                    reporter.error("Row " + rowNum + ": Must have at least option1 or option2 for variation_name: " + variationName);
+                    result.invalidRows++;
+                    rowNum++;
+                    continue;
+                }
+
+                if (!option2.isEmpty() && option1.isEmpty()) {
+                    reporter.error("Row " + rowNum + ": Has option2 but missing option1 for variation_name: " + variationName);
+                    result.invalidRows++;
+                    rowNum++;
+                    continue;
+                }
+
+                if (!variationNames.add(variationName)) {
+                    duplicateVariationNames.add(variationName);
+                    result.invalidRows++;
+                    rowNum++;
+                    continue;
+                }
+
+                if (!productCode.isEmpty() && !productCodes.add(productCode)) {
+                    duplicateProductCodes.add(productCode);
+                    result.invalidRows++;
+                    rowNum++;
+                    continue;
+                }
+
+                if (knownSkus != null && !productCode.isEmpty() && knownSkus.contains(productCode)) {
+                    knownProductCodes.add(productCode);
+                    result.invalidRows++;
+                    rowNum++;
+                    continue;
+                }
+
+                if (printer == null) {
+                    tempFile = File.createTempFile("variation_upload_", ".tmp", outputDir);
+                    printer = new CSVPrinter(Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8), CSVFormat.DEFAULT
+                            .withHeader("variation_name", "option1", "option2", "meta_product_code"));
+                }
+                printer.printRecord(variationName, option1, option2, productCode);
+                result.validRows++;
+                rowNum++;
+            }
+
+            if (printer != null) {
+                printer.close();
+                printer = null;
+                Files.move(tempFile.toPath(), outFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                tempFile = null;
+                result.processedFile = outFile;
+            }
+        } finally {
+            if (printer != null) {
+                try {
+                    printer.close();
+                } catch (IOException e) {
+                    // already failing, the original exception is the one to report
+                }
+            }
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+
+        if (!duplicateVariationNames.isEmpty()) {
+            reporter.error("Duplicate variation_name(s): " + String.join(", ", duplicateVariationNames));
+        }
+        if (!duplicateProductCodes.isEmpty()) {
+            reporter.error("Duplicate product_code(s): " + String.join(", ", duplicateProductCodes));
+        }
+        reportKnownProductCodes(knownProductCodes, reporter);
+
+        if (result.processedFile != null) {
+            reporter.info("Processed file Temporary saved as: " + outFile.getAbsolutePath());
+        } else {
+            reporter.info("No valid records to write.");
+        }
+        recordProductCodes(result, "meta_product_code", reporter);
+        return result;
+    }
+
+    private static void reportKnownProductCodes(Set<String> knownProductCodes, ProcessingReporter reporter) {
+        if (!knownProductCodes.isEmpty()) {
+            reporter.error("product_code(s) already in the SKU index: " + String.join(", ", knownProductCodes));
+        }
+    }
+
+    // With --record-skus, the codes just written are known to the next run
+    private void recordProductCodes(UploadResult result, String column, ProcessingReporter reporter) throws IOException {
+        SkuIndex knownSkus = options.getSkuIndex();
+        if (options.isRecordSkus() && knownSkus != null && result.processedFile != null) {
+            long added = knownSkus.addFromCsv(result.processedFile, column);
+            reporter.info("Recorded " + added + " product code(s) in the SKU index " + knownSkus.getFile());
+        }
+    }
+
+    // Maps the template (BOM skipped, a trailing header comma dropped) and decodes only the UPLOAD_HEADERS
+    // columns, in that order; the other columns of a row are scanned but never turned into Strings
+    private static MappedCsvReader openTemplate(File csvFile) throws IOException {
+        MappedCsvReader reader = new MappedCsvReader(csvFile.toPath(), true);
+        reader.project(reader.findColumns(UPLOAD_HEADERS));
+        return reader;
+    }
+
+    private static boolean hasRequiredHeaders(MappedCsvReader reader, ProcessingReporter reporter) {
+        int[] columns = reader.findColumns(UPLOAD_HEADERS);
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] < 0) {
+                reporter.error("Missing required header: " + UPLOAD_HEADERS.get(i));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The exported columns of a product upload row, trimmed, or null for a blank record
+    private static String[] readUploadRow(String[] values) {
+        String[] row = new String[values.length];
+        boolean isBlankRecord = true;
+        for (int c = 0; c < row.length; c++) {
+            row[c] = values[c].trim();
+            if (!row[c].isEmpty()) {
+                isBlankRecord = false;
+            }
+        }
+        return isBlankRecord ? null : row;
+    }
+
+    private static CSVPrinter openUploadPrinter(File outFile) throws IOException {
+        return new CSVPrinter(Files.newBufferedWriter(outFile.toPath(), StandardCharsets.UTF_8),
+                CSVFormat.DEFAULT.withHeader(UPLOAD_HEADERS.toArray(new String[0])));
+    }
+
+    private static int writeGroups(File outFile, List<List<String[]>> groups) throws IOException {
+        int rows = 0;
+        try (CSVPrinter printer = openUploadPrinter(outFile)) {
+            for (List<String[]> group : groups) {
+                for (String[] row : group) {
+                    printer.printRecord((Object[]) row);
+                    rows++;
+                }
+            }
+            printer.flush();
+        }
+        return rows;
+    }
+
+    /** What an upload run produced. Files are null when nothing was written to them. */
+    public static class UploadResult {
+        File processedFile;
+        File invalidFile;
+        boolean headersMissing;
+        long rowsRead;
+        long validRows;
+        long invalidRows;
+
+        public File getProcessedFile() {
+            return processedFile;
+        }
+
+        public File getInvalidFile() {
+            return invalidFile;
+        }
+
+        public boolean isHeadersMissing() {
+            return headersMissing;
+        }
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public long getValidRows() {
+            return validRows;
+        }
+
+        public long getInvalidRows() {
+            return invalidRows;
+        }
+
+        public boolean hasErrors() {
+            return headersMissing || invalidRows > 0;
+        }
+    }
+}
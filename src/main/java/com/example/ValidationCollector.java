@@ -0,0 +1,124 @@
+package com.example;
+
+import com.example.CsvProcessor.ProductError;
+import com.example.CsvProcessor.SuccessfulRecord;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies handle group verdicts to the run-wide state: the SKU set, meta product handle
+ * uniqueness and the per-handle meta error flags. Verdicts must be accepted in group order; the
+ * first record to claim a SKU keeps it, exactly as in a single sequential pass, so sequential and
+ * parallel validation produce identical sheets. Only the accepting thread touches this object.
+ * Close it when the run ends, to return the SKU set's direct memory; the collected rows stay readable.
+ */
+class ValidationCollector implements AutoCloseable {
+
+    private final Map<String, List<ProductError>> errors = new LinkedHashMap<>(); // sheet order in the output workbook
+    private final List<SuccessfulRecord> successfulRecords = new ArrayList<>();
+    private final SkuRegistry skuSet = new SkuRegistry(); // off-heap; holds every SKU of the run
+    private final CompactStringSet existingMetaProductHandles = new CompactStringSet();  // Track meta product handles
+    private final Set<String> handlesWithUntitledMeta = new HashSet<>(); // Handles that got a "Meta product must have a title" error
+    private final SkuIndex knownSkus; // SKUs of earlier runs, or null
+
+    ValidationCollector(SkuIndex knownSkus) {
+        this.knownSkus = knownSkus;
+        errors.put(CsvProcessor.DUPLICATE_SKUS_SHEET, new ArrayList<>());
+        errors.put(CsvProcessor.INVALID_OPTIONS_SHEET, new ArrayList<>());
+        errors.put(CsvProcessor.OTHER_ERRORS_SHEET, new ArrayList<>());
+    }
+
+    void accept(HandleGroupValidator.GroupVerdict verdict) {
+        String handle = verdict.handle;
+        if (verdict.isRejected()) {
+            errors.get(CsvProcessor.OTHER_ERRORS_SHEET).addAll(verdict.rejectedGroupErrors);
+            return;
+        }
+
+        // A handle with a meta product must be unique across the file
+        if (!verdict.uniqueHandleRecords.isEmpty() && !existingMetaProductHandles.add(handle)) {
+            for (ProductRow metaRecord : verdict.uniqueHandleRecords) {
+                errors.get(CsvProcessor.OTHER_ERRORS_SHEET).add(new ProductError(
+                        "Meta product handle '" + handle + "' is not unique.", metaRecord));
+            }
+            return; // Skip further processing for this handle
+        }
+
+        boolean hasNoMetaProduct = !verdict.hasMetaRecord;
+        boolean hasMetaProductErrors = verdict.hasMetaRecord && handlesWithUntitledMeta.contains(handle);
+
+        errors.get(CsvProcessor.OTHER_ERRORS_SHEET).addAll(verdict.suspectedMetaErrors);
+
+        for (HandleGroupValidator.RecordVerdict rv : verdict.records) {
+            if (rv.variantOptionNamesError != null) {
+                errors.get(CsvProcessor.INVALID_OPTIONS_SHEET).add(rv.variantOptionNamesError);
+            }
+
+            // Collect all errors for this record first
+            List<ProductError> currentRecordErrors = new ArrayList<>(rv.errors.size() + 1);
+            ProductError skuError = rv.missingSkuError;
+            if (skuError == null && !skuSet.add(rv.sku)) {
+                skuError = new ProductError("Duplicate SKU found", rv.record, rv.metaTitle);
+            } else if (skuError == null && knownSkus != null && knownSkus.contains(rv.sku)) {
+                skuError = new ProductError("SKU already exists in the SKU index", rv.record, rv.metaTitle);
+            }
+            if (skuError != null) {
+                currentRecordErrors.add(skuError);
+                errors.get(CsvProcessor.DUPLICATE_SKUS_SHEET).add(skuError);
+            }
+            for (int i = 0; i < rv.errors.size(); i++) {
+                currentRecordErrors.add(rv.errors.get(i));
+                errors.get(rv.errorSheets.get(i)).add(rv.errors.get(i));
+            }
+            if (rv.untitledMeta) {
+                handlesWithUntitledMeta.add(handle);
+            }
+
+            String metaStatus = "";
+            if (hasNoMetaProduct) {
+                metaStatus = "Meta product is missing";
+            } else if (hasMetaProductErrors || rv.hasOptionErrors) {
+                metaStatus = "Meta product has errors";
+            }
+
+            if (!currentRecordErrors.isEmpty()) {
+                //Add meta status to all generated errors
+                for (ProductError error : currentRecordErrors) {
+                    error.metaStatus = metaStatus;
+                }
+            } else {
+                // No errors of its own: a success row, flagged with the meta status if the meta product is missing or has errors
+                successfulRecords.add(new SuccessfulRecord(rv.record, metaStatus));
+            }
+        }
+    }
+
+    Map<String, List<ProductError>> getErrors() {
+        return errors;
+    }
+
+    List<SuccessfulRecord> getSuccessfulRecords() {
+        return successfulRecords;
+    }
+
+    /**
+     * Drops the rows collected so far but keeps the run-wide state, so a spilled run can write out
+     * one partition's rows and carry on with the next.
+     */
+    void clearOutput() {
+        for (List<ProductError> sheetErrors : errors.values()) {
+            sheetErrors.clear();
+        }
+        successfulRecords.clear();
+    }
+
+    @Override
+    public void close() {
+        skuSet.close();
+    }
+}
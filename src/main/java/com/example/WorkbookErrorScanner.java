@@ -0,0 +1,145 @@
+package com.example;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checks an existing output workbook for errors with POI's SAX event API, so the sheets are
+ * streamed instead of being loaded into an XSSFWorkbook. Parsing stops at the first hit.
+ */
+class WorkbookErrorScanner {
+
+    private static final Set<String> ERROR_SHEETS = new HashSet<>(Arrays.asList(
+            CsvProcessor.DUPLICATE_SKUS_SHEET, CsvProcessor.INVALID_OPTIONS_SHEET, CsvProcessor.OTHER_ERRORS_SHEET));
+    private static final int META_STATUS_COLUMN = 8;
+
+    private final String[] errorHeaders;
+    private final String[] successHeaders;
+
+    WorkbookErrorScanner(String[] errorHeaders, String[] successHeaders) {
+        this.errorHeaders = errorHeaders;
+        this.successHeaders = successHeaders;
+    }
+
+    boolean hasErrors(File excelFile) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(excelFile, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheetData = sheets.next()) {
+                    String sheetName = sheets.getSheetName();
+                    SheetScan scan;
+                    if (ERROR_SHEETS.contains(sheetName)) {
+                        scan = new SheetScan(errorHeaders, -1);
+                    } else if (CsvProcessor.SUCCESS_SHEET.equals(sheetName)) {
+                        scan = new SheetScan(successHeaders, META_STATUS_COLUMN);
+                    } else {
+                        continue;
+                    }
+                    if (scan.run(styles, strings, sheetData)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Could not read workbook " + excelFile.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Scans one sheet: finds the header row, then flags the sheet if any row follows it (error
+     * sheets) or if any following row has a non-empty value in {@code statusColumn} (Success).
+     */
+    private static class SheetScan implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final String[] expectedHeaders;
+        private final int statusColumn;
+        private final String[] currentRow;
+        private boolean headerFound;
+        private boolean errorFound;
+
+        SheetScan(String[] expectedHeaders, int statusColumn) {
+            this.expectedHeaders = expectedHeaders;
+            this.statusColumn = statusColumn;
+            this.currentRow = new String[expectedHeaders.length];
+        }
+
+        boolean run(StylesTable styles, ReadOnlySharedStringsTable strings, InputStream sheetData)
+                throws IOException, SAXException, ParserConfigurationException {
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, this, new DataFormatter(), false));
+            try {
+                parser.parse(new InputSource(sheetData));
+            } catch (StopScan ignored) {
+                // verdict reached, no need to read the rest of the sheet
+            }
+            return errorFound;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            Arrays.fill(currentRow, null);
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (!headerFound) {
+                headerFound = Arrays.equals(currentRow, expectedHeaders);
+                return;
+            }
+            if (statusColumn < 0) {
+                errorFound = true;
+            } else {
+                String status = currentRow[statusColumn];
+                errorFound = status != null && !status.isEmpty();
+            }
+            if (errorFound) {
+                throw new StopScan();
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+            if (column < currentRow.length) {
+                currentRow[column] = formattedValue;
+            }
+        }
+
+        @Override
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
+    }
+
+    // Unchecked so it can escape the SheetContentsHandler callbacks and unwind the SAX parser
+    private static class StopScan extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StopScan() {
+            super(null, null, false, false);
+        }
+    }
+}
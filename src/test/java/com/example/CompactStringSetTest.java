@@ -0,0 +1,54 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactStringSetTest {
+
+    @Test
+    void growsPastItsInitialTable() {
+        CompactStringSet set = new CompactStringSet(4);
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(set.add("handle-" + i));
+        }
+        assertEquals(100_000, set.size());
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(set.contains("handle-" + i), "handle-" + i);
+            assertFalse(set.add("handle-" + i));
+        }
+        assertFalse(set.contains("handle-100000"));
+        assertEquals(100_000, set.size());
+    }
+
+    @Test
+    void keepsKeysWithTheSameHashCode() {
+        CompactStringSet set = new CompactStringSet();
+        // "Aa" and "BB" share a hash code, and so does every string made of them
+        String[] parts = {"Aa", "BB"};
+        int added = 0;
+        for (String a : parts) {
+            for (String b : parts) {
+                for (String c : parts) {
+                    assertTrue(set.add(a + b + c));
+                    added++;
+                }
+            }
+        }
+        assertEquals(added, set.size());
+        assertTrue(set.contains("AaBBAa"));
+        assertFalse(set.add("BBBBBB"));
+        assertFalse(set.contains("AaAa"));
+    }
+
+    @Test
+    void holdsTheEmptyString() {
+        CompactStringSet set = new CompactStringSet();
+        assertFalse(set.contains(""));
+        assertTrue(set.add(""));
+        assertFalse(set.add(""));
+        assertTrue(set.contains(""));
+    }
+}
@@ -0,0 +1,183 @@
+package com.example;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Processing modes on the same generated catalog. Modes that validate the handle groups in the
+ * same order must write the same workbook row for row; grouped and contiguous mode both take the
+ * groups in file order. Spill mode takes them partition by partition, and the first row to claim a
+ * SKU keeps it, so it is compared on a catalog without duplicate SKUs: there each sheet holds the
+ * same rows, in some order.
+ */
+class CsvProcessorModesTest {
+
+    @TempDir
+    File tempDir;
+
+    // More handles than PARALLEL_VALIDATION_MIN_GROUPS, so the validation pool is really used
+    private File writeCatalog(double duplicateSkuRate) throws IOException {
+        return ProductCatalogFixture.write(new File(tempDir, "catalog.csv"), 2400, duplicateSkuRate);
+    }
+
+    private static ProcessingOptions grouped() {
+        ProcessingOptions options = new ProcessingOptions();
+        options.setContiguousHandles(false);
+        options.setValidationParallelism(1);
+        return options;
+    }
+
+    private static ProcessingOptions contiguous(boolean pipelined) {
+        ProcessingOptions options = grouped();
+        options.setContiguousHandles(true);
+        options.setPipelined(pipelined);
+        return options;
+    }
+
+    @Test
+    void parallelValidationMatchesSequential() throws IOException {
+        File csv = writeCatalog(0.02);
+        ProcessingOptions parallel = grouped();
+        parallel.setValidationParallelism(4);
+        assertSameWorkbook(run(csv, grouped(), "sequential"), run(csv, parallel, "parallel"));
+    }
+
+    @Test
+    void pipelinedContiguousMatchesInline() throws IOException {
+        File csv = writeCatalog(0.02);
+        assertSameWorkbook(run(csv, contiguous(false), "inline"), run(csv, contiguous(true), "pipelined"));
+    }
+
+    @Test
+    void parallelValidationInPipelineMatchesInline() throws IOException {
+        File csv = writeCatalog(0.02);
+        ProcessingOptions parallel = contiguous(true);
+        parallel.setValidationParallelism(4);
+        assertSameWorkbook(run(csv, contiguous(false), "inline"), run(csv, parallel, "parallel"));
+    }
+
+    @Test
+    void spillModeWritesTheGroupedRows() throws IOException {
+        File csv = writeCatalog(0);
+        ProcessingOptions spill = grouped();
+        spill.setSpillThresholdBytes(0);
+        spill.setSpillDirectory(tempDir);
+        assertSameRows(run(csv, grouped(), "grouped"), run(csv, spill, "spill"));
+        assertEquals(0, tempDir.list((dir, name) -> name.startsWith("csv-spill-")).length, "spill directory left behind");
+    }
+
+    @Test
+    void contiguousModeMatchesGrouped() throws IOException {
+        File csv = writeCatalog(0.02);
+        ProcessingResult grouped = run(csv, grouped(), "grouped");
+        // Which copy of a repeated SKU is flagged depends on the group order
+        assertTrue(grouped.getSheetCounts().get(CsvProcessor.DUPLICATE_SKUS_SHEET) > 0);
+        assertSameWorkbook(grouped, run(csv, contiguous(true), "contiguous"));
+    }
+
+    private ProcessingResult run(File csv, ProcessingOptions options, String name) throws IOException {
+        File output = new File(tempDir, name + ".xlsx");
+        List<String> problems = new ArrayList<>();
+        ProcessingResult result = new CsvProcessor(options).processCsv(csv.getPath(), output.getPath(), new ProcessingReporter() {
+            @Override
+            public void info(String message) {
+            }
+
+            @Override
+            public void warning(String message) {
+                problems.add(message);
+            }
+
+            @Override
+            public void error(String message) {
+                problems.add(message);
+            }
+        });
+        assertNotNull(result, name + " wrote no output");
+        assertTrue(problems.isEmpty(), name + ": " + problems);
+        return result;
+    }
+
+    private static void assertSameCounts(ProcessingResult expected, ProcessingResult actual) {
+        assertEquals(expected.getRowsRead(), actual.getRowsRead());
+        assertEquals(expected.getImageRowsSkipped(), actual.getImageRowsSkipped());
+        assertEquals(expected.getSheetCounts(), actual.getSheetCounts());
+        assertEquals(expected.getMetaStatusCounts(), actual.getMetaStatusCounts());
+    }
+
+    private static void assertSameWorkbook(ProcessingResult expected, ProcessingResult actual) throws IOException {
+        assertSameCounts(expected, actual);
+        Map<String, List<List<String>>> expectedSheets = readWorkbook(expected);
+        Map<String, List<List<String>>> actualSheets = readWorkbook(actual);
+        assertEquals(expectedSheets.keySet(), actualSheets.keySet());
+        for (Map.Entry<String, List<List<String>>> sheet : expectedSheets.entrySet()) {
+            List<List<String>> expectedRows = sheet.getValue();
+            List<List<String>> actualRows = actualSheets.get(sheet.getKey());
+            assertEquals(expectedRows.size(), actualRows.size(), sheet.getKey() + " rows");
+            for (int i = 0; i < expectedRows.size(); i++) {
+                assertEquals(expectedRows.get(i), actualRows.get(i), sheet.getKey() + " row " + i);
+            }
+        }
+    }
+
+    // Same sheets with the same rows, whatever their order
+    private static void assertSameRows(ProcessingResult expected, ProcessingResult actual) throws IOException {
+        assertSameCounts(expected, actual);
+        Map<String, List<List<String>>> expectedSheets = readWorkbook(expected);
+        Map<String, List<List<String>>> actualSheets = readWorkbook(actual);
+        assertEquals(expectedSheets.keySet(), actualSheets.keySet());
+        for (Map.Entry<String, List<List<String>>> sheet : expectedSheets.entrySet()) {
+            assertEquals(sorted(sheet.getValue()), sorted(actualSheets.get(sheet.getKey())), sheet.getKey());
+        }
+    }
+
+    private static List<String> sorted(List<List<String>> rows) {
+        List<String> lines = new ArrayList<>();
+        for (List<String> row : rows) {
+            lines.add(String.join("\u0001", row));
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    // Sheet name to its rows as the user sees them, count row and header row included
+    private static Map<String, List<List<String>>> readWorkbook(ProcessingResult result) throws IOException {
+        Map<String, List<List<String>>> sheets = new LinkedHashMap<>();
+        DataFormatter formatter = new DataFormatter();
+        try (Workbook workbook = new XSSFWorkbook(new File(result.getOutputFilePath()))) {
+            for (Sheet sheet : workbook) {
+                List<List<String>> rows = new ArrayList<>();
+                for (Row row : sheet) {
+                    List<String> values = new ArrayList<>();
+                    for (Cell cell : row) {
+                        values.add(formatter.formatCellValue(cell));
+                    }
+                    rows.add(values);
+                }
+                sheets.put(sheet.getSheetName(), rows);
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException(e);
+        }
+        return sheets;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class FingerprintIndexTest {
+
+    @Test
+    void keepsTheFirstGroupOfEachKey() {
+        FingerprintIndex index = new FingerprintIndex();
+        assertEquals(-1, index.putIfAbsent(FingerprintIndex.fingerprint("P-1"), 0));
+        assertEquals(-1, index.putIfAbsent(FingerprintIndex.fingerprint("P-2"), 1));
+        assertEquals(0, index.putIfAbsent(FingerprintIndex.fingerprint("P-1"), 2));
+        assertEquals(1, index.putIfAbsent(FingerprintIndex.fingerprint("P-2"), 3));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void growsPastItsInitialTable() {
+        FingerprintIndex index = new FingerprintIndex();
+        for (int group = 0; group < 100_000; group++) {
+            assertEquals(-1, index.putIfAbsent(FingerprintIndex.fingerprint("code-" + group), group));
+        }
+        assertEquals(100_000, index.size());
+        for (int group = 0; group < 100_000; group++) {
+            assertEquals(group, index.putIfAbsent(FingerprintIndex.fingerprint("code-" + group), -5));
+        }
+        assertEquals(100_000, index.size());
+    }
+
+    @Test
+    void storesTheZeroFingerprint() {
+        // 0 marks an empty slot, so it is stored under another value
+        FingerprintIndex index = new FingerprintIndex();
+        assertEquals(-1, index.putIfAbsent(0L, 7));
+        assertEquals(7, index.putIfAbsent(0L, 8));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void fingerprintsDependOnEveryChar() {
+        assertNotEquals(FingerprintIndex.fingerprint("Aa"), FingerprintIndex.fingerprint("BB"));
+        assertNotEquals(FingerprintIndex.fingerprint("ab"), FingerprintIndex.fingerprint("ba"));
+        assertNotEquals(FingerprintIndex.fingerprint(""), FingerprintIndex.fingerprint("\u0000"));
+        assertEquals(FingerprintIndex.fingerprint("SKU-1"), FingerprintIndex.fingerprint(new String("SKU-1")));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A parallel parse must return exactly the records of a sequential one, wherever the chunk edges
+ * fall: every small chunk size is tried, so edges land inside quoted fields, between CR and LF and
+ * right after literal quotes.
+ */
+class ParallelChunkParserTest {
+
+    private static final int ROWS = 60;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void quotedLineBreaksAcrossChunkEdges() throws IOException {
+        StringBuilder csv = new StringBuilder("Handle,Body,SKU\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append("h").append(i).append(",\"<p>line one\nline \"\"two\"\",\n\nthree</p>\",S").append(i).append('\n');
+        }
+        assertParallelMatchesSequential(csv.toString(), ROWS);
+    }
+
+    @Test
+    void literalQuoteInUnquotedField() throws IOException {
+        // The quote in 12" pipe opens nothing, but it flips the quote parity for every later chunk
+        StringBuilder csv = new StringBuilder("Handle,Body,SKU\n");
+        csv.append("pipe,12\" pipe,P0\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append("h").append(i).append(",\"a,\nb\",S").append(i).append('\n');
+        }
+        assertParallelMatchesSequential(csv.toString(), ROWS + 1);
+    }
+
+    @Test
+    void crlfLineEndingsAtChunkEdges() throws IOException {
+        StringBuilder csv = new StringBuilder("Handle,Body,SKU\r\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append("h").append(i).append(i % 3 == 0 ? ",\"x\r\ny\"," : ",plain,").append('S').append(i).append("\r\n");
+            if (i % 10 == 0) {
+                csv.append("\r\n"); // an empty line is skipped
+            }
+        }
+        assertParallelMatchesSequential(csv.toString(), ROWS);
+    }
+
+    private void assertParallelMatchesSequential(String content, int expectedRecords) throws IOException {
+        Path file = tempDir.resolve("products.csv");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        List<List<String>> sequential = read(file, 1, 0);
+        assertEquals(expectedRecords, sequential.size());
+        for (long chunkBytes = 8; chunkBytes <= 96; chunkBytes++) {
+            assertEquals(sequential, read(file, 4, chunkBytes), "chunks of " + chunkBytes + " bytes");
+        }
+    }
+
+    private static List<List<String>> read(Path file, int threads, long chunkBytes) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (MappedCsvReader reader = new MappedCsvReader(file)) {
+            reader.project(new int[]{0, 1, 2});
+            if (threads > 1) {
+                reader.parseInParallel(threads, chunkBytes);
+            }
+            String[] values = new String[3];
+            while (reader.next(values)) {
+                records.add(new ArrayList<>(Arrays.asList(values)));
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Writes a generated Shopify product export for the processor tests: a meta product row and one to
+ * four variants per handle, in handle order, with extra image rows, multi-line bodies, broken
+ * option names, missing titles and repeated SKUs mixed in. The same arguments give the same file.
+ */
+final class ProductCatalogFixture {
+    private static final String[] HEADERS = {"Handle", "Title", "Body (HTML)", "Product Category", "Option1 Name",
+            "Option1 Value", "Option2 Name", "Option2 Value", "Variant SKU", "Image Src"};
+    private static final String[] COLORS = {"Black", "White", "Navy", "Red"};
+    private static final String[][] INVALID_OPTION_NAMES = {{"Material", "Size"}, {"Color", "Colour"}, {"Size", "Size"},
+            {"Color", "Title"}, {"", ""}};
+
+    private ProductCatalogFixture() {
+    }
+
+    static File write(File file, int handles, double duplicateSkuRate) throws IOException {
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+             CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT.withHeader(HEADERS))) {
+            int sku = 0;
+            for (int product = 0; product < handles; product++) {
+                String handle = "product-" + product;
+                String[] optionNames = random.nextDouble() < 0.05
+                        ? INVALID_OPTION_NAMES[random.nextInt(INVALID_OPTION_NAMES.length)]
+                        : new String[]{"Color", "Size"};
+                int variants = 1 + random.nextInt(4);
+                for (int variant = 0; variant < variants; variant++, sku++) {
+                    boolean meta = variant == 0;
+                    String title = meta && random.nextDouble() >= 0.02 ? "Product " + product : "";
+                    String skuValue = sku > 0 && random.nextDouble() < duplicateSkuRate
+                            ? "SKU-" + random.nextInt(sku)
+                            : "SKU-" + sku;
+                    printer.printRecord(handle, title, meta ? "<p>Soft, light\nand \"comfy\"</p>" : "",
+                            meta ? "Apparel & Accessories > Shoes" : "", meta ? optionNames[0] : "",
+                            COLORS[variant], meta ? optionNames[1] : "", String.valueOf(30 + variant), skuValue,
+                            "https://cdn.example.com/" + handle + "_" + variant + ".jpg");
+                    if (random.nextDouble() < 0.2) {
+                        printer.printRecord(handle, "", "", "", "", "", "", "", "",
+                                "https://cdn.example.com/" + handle + "_extra" + variant + ".jpg");
+                    }
+                }
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SkuIndexTest {
+
+    private static final int HEADER_BYTES = 8;
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void reopensWithTheSameSkus() throws IOException {
+        File file = new File(tempDir, "index/sku-index.dat");
+        try (SkuIndex index = SkuIndex.open(file)) {
+            assertTrue(index.add("SKU-1"));
+            assertTrue(index.add("Größe-42")); // stored two bytes per char
+            assertFalse(index.add("SKU-1"));
+            assertFalse(index.add(""));
+            assertEquals(2, index.size());
+        }
+        try (SkuIndex index = SkuIndex.open(file)) {
+            assertEquals(2, index.size());
+            assertTrue(index.contains("SKU-1"));
+            assertTrue(index.contains("Größe-42"));
+            assertFalse(index.contains("SKU-2"));
+            assertTrue(index.add("SKU-2"));
+        }
+        try (SkuIndex index = SkuIndex.open(file)) {
+            assertEquals(3, index.size());
+            assertTrue(index.contains("SKU-2"));
+        }
+    }
+
+    @Test
+    void growsPastOneFileStep() throws IOException {
+        // 20,000 records of about 1 KB outgrow the first 16 MB of the file, and the table many times over
+        File file = new File(tempDir, "sku-index.dat");
+        String padding = new String(new char[1000]).replace('\0', 'p');
+        long firstSize;
+        try (SkuIndex index = SkuIndex.open(file)) {
+            firstSize = file.length();
+            for (int i = 0; i < 20_000; i++) {
+                assertTrue(index.add(i + padding));
+            }
+        }
+        assertTrue(file.length() > firstSize, "file grew");
+        try (SkuIndex index = SkuIndex.open(file)) {
+            assertEquals(20_000, index.size());
+            for (int i = 0; i < 20_000; i++) {
+                assertTrue(index.contains(i + padding), i + padding.substring(0, 3));
+            }
+        }
+    }
+
+    @Test
+    void ignoresARecordTornBeforeItsFingerprint() throws IOException {
+        File file = new File(tempDir, "sku-index.dat");
+        try (SkuIndex index = SkuIndex.open(file)) {
+            index.add("SKU-1");
+            index.add("SKU-2");
+        }
+        // A crash after the length and chars of "SKU-3" were written, before its fingerprint
+        long end = HEADER_BYTES + 2 * (12 + "SKU-1".length());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(end + 8);
+            raf.write(new byte[]{5, 0, 0, 0}); // little-endian length
+            raf.write("SKU-3".getBytes(StandardCharsets.US_ASCII));
+        }
+        try (SkuIndex index = SkuIndex.open(file)) {
+            assertEquals(2, index.size());
+            assertFalse(index.contains("SKU-3"));
+            assertTrue(index.add("SKU-4")); // written over the torn record
+        }
+        try (SkuIndex index = SkuIndex.open(file)) {
+            assertEquals(3, index.size());
+            assertTrue(index.contains("SKU-4"));
+            assertFalse(index.contains("SKU-3"));
+        }
+    }
+
+    @Test
+    void ignoresARecordCutOffByTheEndOfTheFile() throws IOException {
+        File file = new File(tempDir, "sku-index.dat");
+        try (SkuIndex index = SkuIndex.open(file)) {
+            index.add("SKU-1");
+            index.add("SKU-2");
+        }
+        // Truncate in the middle of the second record's chars
+        long secondRecord = HEADER_BYTES + 12 + "SKU-1".length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(secondRecord + 12 + 2);
+        }
+        try (SkuIndex index = SkuIndex.open(file)) {
+            assertEquals(1, index.size());
+            assertTrue(index.contains("SKU-1"));
+            assertFalse(index.contains("SKU-2"));
+            assertTrue(index.add("SKU-2"));
+        }
+        try (SkuIndex index = SkuIndex.open(file)) {
+            assertEquals(2, index.size());
+            assertTrue(index.contains("SKU-2"));
+        }
+    }
+
+    @Test
+    void rebuildReplacesTheSkus() throws IOException {
+        File file = new File(tempDir, "sku-index.dat");
+        File export = new File(tempDir, "export.csv");
+        Files.write(export.toPath(), "id,product_code\n1,A-1\n2,A-2\n3,A-1\n".getBytes(StandardCharsets.UTF_8));
+        try (SkuIndex index = SkuIndex.open(file)) {
+            index.add("OLD-1");
+            assertEquals(2, index.rebuildFrom(export, null));
+            assertFalse(index.contains("OLD-1"));
+        }
+        try (SkuIndex index = SkuIndex.open(file)) {
+            assertEquals(2, index.size());
+            assertTrue(index.contains("A-1"));
+            assertTrue(index.contains("A-2"));
+            assertFalse(index.contains("OLD-1"));
+        }
+    }
+
+    @Test
+    void rebuildFromABrokenExportKeepsTheSkus() throws IOException {
+        File file = new File(tempDir, "sku-index.dat");
+        File export = new File(tempDir, "export.csv");
+        // The quote opened on the last row is never closed
+        Files.write(export.toPath(), "id,product_code\n1,A-1\n2,\"A-2\n".getBytes(StandardCharsets.UTF_8));
+        try (SkuIndex index = SkuIndex.open(file)) {
+            index.add("OLD-1");
+            index.add("OLD-2");
+            assertThrows(IOException.class, () -> index.rebuildFrom(export, null));
+            assertEquals(2, index.size());
+            assertTrue(index.contains("OLD-1"));
+            assertFalse(index.contains("A-1"));
+        }
+        try (SkuIndex index = SkuIndex.open(file)) {
+            assertEquals(2, index.size());
+            assertTrue(index.contains("OLD-1"));
+            assertTrue(index.contains("OLD-2"));
+        }
+    }
+
+    @Test
+    void refusesAFileThatIsNotAnIndex() throws IOException {
+        File file = new File(tempDir, "not-an-index.dat");
+        Files.write(file.toPath(), "Handle,Title\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> SkuIndex.open(file).close());
+    }
+}
@@ -0,0 +1,103 @@
+package com.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Every test closes its registries, so the direct memory in use only changes with the registry under test
+class SkuRegistryTest {
+
+    @Test
+    void growsPastItsInitialTable() {
+        try (SkuRegistry registry = new SkuRegistry()) {
+            for (int i = 0; i < 100_000; i++) {
+                assertTrue(registry.add("SKU-" + i));
+            }
+            assertEquals(100_000, registry.size());
+            for (int i = 0; i < 100_000; i++) {
+                assertTrue(registry.contains("SKU-" + i), "SKU-" + i);
+                assertFalse(registry.add("SKU-" + i));
+            }
+            assertFalse(registry.contains("SKU-100000"));
+            assertEquals(100_000, registry.size());
+        }
+    }
+
+    @Test
+    void keysSpanSeveralArenaChunks() {
+        // 2,000 keys of 10,000 chars take about 20 MB: every arena chunk size from 64 KB up to 16 MB
+        try (SkuRegistry registry = new SkuRegistry()) {
+            StringBuilder padding = new StringBuilder();
+            for (int i = 0; i < 10_000; i++) {
+                padding.append('x');
+            }
+            for (int i = 0; i < 2_000; i++) {
+                assertTrue(registry.add(i + padding.toString()));
+            }
+            for (int i = 0; i < 2_000; i++) {
+                assertTrue(registry.contains(i + padding.toString()));
+            }
+            assertFalse(registry.contains(padding.toString()));
+        }
+    }
+
+    @Test
+    void tellsKeysApartByContent() {
+        try (SkuRegistry registry = new SkuRegistry()) {
+            // Same String.hashCode, and keys that differ only in a non-ASCII char or in length
+            assertTrue(registry.add("Aa"));
+            assertTrue(registry.add("BB"));
+            assertTrue(registry.add("café"));
+            assertTrue(registry.add("cafe"));
+            assertTrue(registry.add("caf"));
+            assertTrue(registry.add(""));
+            assertFalse(registry.add("café"));
+            assertFalse(registry.add(""));
+            assertTrue(registry.contains("Aa"));
+            assertTrue(registry.contains("BB"));
+            assertFalse(registry.contains("cafè"));
+            assertEquals(6, registry.size());
+        }
+    }
+
+    @Test
+    void smallRunsTakeLittleDirectMemory() {
+        long before = directMemoryUsed();
+        try (SkuRegistry registry = new SkuRegistry()) {
+            for (int i = 0; i < 100; i++) {
+                registry.add("SKU-" + i);
+            }
+            long used = directMemoryUsed() - before;
+            assertTrue(used > 0 && used < 1024 * 1024, "direct memory used: " + used);
+        }
+    }
+
+    @Test
+    void closeReturnsTheDirectMemory() {
+        long before = directMemoryUsed();
+        SkuRegistry registry = new SkuRegistry();
+        for (int i = 0; i < 100_000; i++) {
+            registry.add("SKU-" + i);
+        }
+        assertTrue(directMemoryUsed() > before);
+        registry.close();
+        assertEquals(before, directMemoryUsed());
+        registry.close();
+        assertThrows(NullPointerException.class, () -> registry.add("SKU-1"));
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        throw new IllegalStateException("No direct buffer pool");
+    }
+}